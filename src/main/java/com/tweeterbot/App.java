@@ -7,8 +7,13 @@ public class App {
     if (cli) {
       if (args.length < 2) {
         System.err.println("Usage: java -jar tweeter-bot.jar --cli <topic>");
+        System.err.println("       java -jar tweeter-bot.jar --cli --batch <file|-> [--workers N]");
         System.exit(1);
       }
+      if ("--batch".equalsIgnoreCase(args[1])) {
+        runBatch(args);
+        return;
+      }
       String topic = joinArgs(args, 1);
       CliRunner.run(topic);
       return;
@@ -17,6 +22,30 @@ public class App {
     WebServer.start();
   }
 
+  private static void runBatch(String[] args) {
+    if (args.length < 3) {
+      System.err.println("Usage: java -jar tweeter-bot.jar --cli --batch <file|-> [--workers N]");
+      System.exit(1);
+    }
+
+    int workers = Config.envInt("CLI_WORKERS", 8);
+    for (int i = 3; i < args.length; i++) {
+      if ("--workers".equalsIgnoreCase(args[i]) && i + 1 < args.length) {
+        try {
+          workers = Integer.parseInt(args[++i]);
+        } catch (NumberFormatException e) {
+          System.err.println("Invalid --workers value: " + args[i]);
+          System.exit(1);
+        }
+      }
+    }
+    if (workers < 1) {
+      System.err.println("Invalid worker count " + workers + ": must be at least 1");
+      System.exit(1);
+    }
+    CliRunner.runBatch(args[2], workers);
+  }
+
   private static String joinArgs(String[] args, int start) {
     StringBuilder sb = new StringBuilder();
     for (int i = start; i < args.length; i++) {
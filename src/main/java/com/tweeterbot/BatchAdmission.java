@@ -0,0 +1,88 @@
+package com.tweeterbot;
+
+/**
+ * Admission control for batch requests, which run on their own {@code slots} upstream slots. A
+ * batch is admitted only if those slots can finish it, together with every batch topic admitted
+ * ahead of it, before its deadline. The estimate is the number of rounds (topics divided by slots,
+ * rounded up) times the moving average duration of one round, learned from completed batches.
+ */
+public class BatchAdmission {
+  private static final double EWMA_ALPHA = 0.2;
+
+  private final int slots;
+  private int inFlight;
+  private volatile double avgRoundMillis;
+
+  public BatchAdmission(int slots, long initialRoundMillis) {
+    this.slots = Math.max(1, slots);
+    this.avgRoundMillis = initialRoundMillis;
+  }
+
+  /**
+   * Returns an admitted permit for {@code topics} generations, or a rejected one carrying a
+   * Retry-After hint for when the topics already admitted should have drained. Always close the
+   * returned permit.
+   */
+  public synchronized Permit admit(Deadline deadline, int topics) {
+    int rounds = rounds(inFlight + topics);
+    if (rounds * avgRoundMillis > deadline.remainingMillis()) {
+      long drainMillis = (long) (rounds(inFlight) * avgRoundMillis);
+      return new Permit(false, Math.max(1, (drainMillis + 999) / 1000), 0, 0);
+    }
+    inFlight += topics;
+    return new Permit(true, 0, topics, rounds);
+  }
+
+  private int rounds(int topics) {
+    return (topics + slots - 1) / slots;
+  }
+
+  private synchronized void release(int topics) {
+    inFlight -= topics;
+  }
+
+  private void record(long roundMillis) {
+    avgRoundMillis = EWMA_ALPHA * roundMillis + (1 - EWMA_ALPHA) * avgRoundMillis;
+  }
+
+  public class Permit implements AutoCloseable {
+    private final boolean admitted;
+    private final long retryAfterSeconds;
+    private final int topics;
+    private final int rounds;
+    private final long admittedAtNanos = System.nanoTime();
+    private boolean closed;
+
+    private Permit(boolean admitted, long retryAfterSeconds, int topics, int rounds) {
+      this.admitted = admitted;
+      this.retryAfterSeconds = retryAfterSeconds;
+      this.topics = topics;
+      this.rounds = rounds;
+    }
+
+    public boolean admitted() {
+      return admitted;
+    }
+
+    public long retryAfterSeconds() {
+      return retryAfterSeconds;
+    }
+
+    /**
+     * Feeds the batch's wall time per round into the estimate. Only call it for a batch that ran to
+     * the end; an abandoned one would make rounds look shorter than they are.
+     */
+    public void completed() {
+      if (admitted) {
+        record((System.nanoTime() - admittedAtNanos) / 1_000_000 / Math.max(1, rounds));
+      }
+    }
+
+    @Override
+    public synchronized void close() {
+      if (!admitted || closed) return;
+      closed = true;
+      release(topics);
+    }
+  }
+}
@@ -1,31 +1,35 @@
 package com.tweeterbot;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CliRunner {
+  /** Generates one topic with the {@code SUMMARY_ENGINE} engine and prints the tweets, summary and post. */
   public static void run(String topic) {
-    String xToken = System.getenv("X_BEARER_TOKEN");
-    if (xToken == null || xToken.isBlank()) {
-      System.err.println("Missing X_BEARER_TOKEN environment variable.");
-      System.exit(1);
-    }
-
-    String openAiKey = System.getenv("OPENAI_API_KEY");
-    if (openAiKey == null || openAiKey.isBlank()) {
-      System.err.println("Missing OPENAI_API_KEY environment variable.");
-      System.exit(1);
-    }
-
-    String xBase = System.getenv().getOrDefault("X_API_BASE_URL", "https://api.x.com/2");
-    String oaBase = System.getenv().getOrDefault("OPENAI_API_BASE_URL", "https://api.openai.com/v1");
-    String model = System.getenv().getOrDefault("OPENAI_MODEL", "gpt-4o-mini");
-    String moderationModel = System.getenv().getOrDefault("OPENAI_MODERATION_MODEL", "omni-moderation-latest");
+    GenerationPipeline pipeline = GenerationPipeline.fromEnv();
+    requireCredentials(pipeline.defaultEngine());
 
     try {
-      XClient xClient = new XClient(xToken, xBase);
-      List<Tweet> tweets = xClient.fetchRecentUniqueAuthors(topic, 50);
+      GenerationPipeline.Result result = pipeline.run(topic, status -> {}).get();
+      List<Tweet> tweets = result.tweets();
 
       System.out.println("Fetched " + tweets.size() + " tweets from unique authors.");
       System.out.println();
@@ -42,23 +46,112 @@ public class CliRunner {
         i++;
       }
 
-      OpenAIClient ai = new OpenAIClient(openAiKey, oaBase, model);
-      OpenAIClient.SummaryPayload summary = ai.summarize(topic, tweets);
-
-      OpenAIModerationClient moderation = new OpenAIModerationClient(openAiKey, oaBase, moderationModel);
-      OpenAIModerationClient.ModerationResult mod = moderation.moderate(summary.suggestedPost);
-      if (mod.flagged()) {
-        summary.suggestedPost = "Suggested post withheld due to safety policies.";
-      }
-
-      System.out.println("Summary:");
+      OpenAIClient.SummaryPayload summary = result.summary();
+      System.out.println("Summary (" + result.engine().id() + "):");
       System.out.println(summary.summary);
       System.out.println();
 
       System.out.println("Suggested Post:");
       System.out.println(summary.suggestedPost);
     } catch (Exception e) {
-      System.err.println("Error: " + e.getMessage());
+      System.err.println("Error: " + GenerationPipeline.errorMessage(e));
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Processes every topic in {@code source} (a file path, or {@code -} for stdin) through one shared
+   * pipeline with at most {@code workers} topics in flight. Each result is printed as a JSON line the
+   * moment it finishes; a throughput summary goes to stderr at the end.
+   */
+  public static void runBatch(String source, int workers) {
+    GenerationPipeline pipeline = GenerationPipeline.fromEnv();
+    requireCredentials(pipeline.defaultEngine());
+
+    List<String> topics;
+    try {
+      topics = readTopics(source);
+    } catch (IOException e) {
+      System.err.println("Error reading topics: " + e.getMessage());
+      System.exit(1);
+      return;
+    }
+    if (topics.isEmpty()) {
+      System.err.println("No topics found in " + source);
+      System.exit(1);
+    }
+
+    ObjectMapper mapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(workers);
+    AtomicInteger failed = new AtomicInteger();
+    long started = System.nanoTime();
+
+    List<CompletableFuture<Void>> runs = new ArrayList<>();
+    for (String topic : topics) {
+      runs.add(limiter.submit(() -> pipeline.run(topic, s -> {}))
+          .handle((result, error) -> {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("topic", topic);
+            if (error != null) {
+              failed.incrementAndGet();
+              line.put("error", GenerationPipeline.errorMessage(error));
+            } else {
+              line.put("generated_at", Instant.now().toString());
+              line.put("model", result.engine() == SummaryEngine.LOCAL ? "local" : pipeline.model());
+              line.put("engine", result.engine().id());
+              line.put("tweets", result.tweets());
+              line.put("summary", result.summary());
+              line.put("moderation", result.moderation());
+            }
+            printLine(mapper, line);
+            return null;
+          }));
+    }
+    CompletableFuture.allOf(runs.toArray(new CompletableFuture<?>[0])).join();
+
+    double seconds = (System.nanoTime() - started) / 1e9;
+    int errors = failed.get();
+    System.err.printf(Locale.ROOT, "Processed %d topics in %.1fs with %d workers (%d ok, %d failed, %.2f topics/s)%n",
+        topics.size(), seconds, workers, topics.size() - errors, errors, topics.size() / Math.max(seconds, 0.001));
+    if (errors > 0) {
+      System.exit(1);
+    }
+  }
+
+  private static synchronized void printLine(ObjectMapper mapper, Map<String, Object> line) {
+    try {
+      System.out.println(mapper.writeValueAsString(line));
+      System.out.flush();
+    } catch (IOException e) {
+      System.err.println("Error writing result for " + line.get("topic") + ": " + e.getMessage());
+    }
+  }
+
+  private static List<String> readTopics(String source) throws IOException {
+    BufferedReader reader = "-".equals(source)
+        ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+        : Files.newBufferedReader(Path.of(source), StandardCharsets.UTF_8);
+
+    List<String> topics = new ArrayList<>();
+    try (reader) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String topic = line.trim();
+        if (!topic.isEmpty() && !topic.startsWith("#")) {
+          topics.add(topic);
+        }
+      }
+    }
+    return topics;
+  }
+
+  /** Exits with the same message the server returns when {@code engine} lacks a credential. */
+  private static void requireCredentials(SummaryEngine engine) {
+    String missing = Config.missingCredential(engine);
+    if (missing != null) {
+      System.err.println("Missing " + missing + " environment variable.");
       System.exit(1);
     }
   }
@@ -0,0 +1,123 @@
+package com.tweeterbot;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Columnar, read-only batch of tweets used for long-lived storage such as the topic cache.
+ * Ids and timestamps are primitive longs, all texts share one UTF-8 byte array, and authors are
+ * interned so that a popular author appearing in many cached topics is held in memory only once.
+ * {@link Tweet} objects are rebuilt on demand by {@link #toTweets()}.
+ */
+public final class CompactTweets {
+  private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+  private static final Map<Author, WeakReference<Author>> AUTHORS = new WeakHashMap<>();
+
+  private final long[] ids;
+  private final String[] rawIds; // only when some id is not numeric
+  private final Author[] authors;
+  private final long[] createdAtEpochSeconds;
+  private final byte[] text;
+  private final int[] textOffsets;
+
+  private CompactTweets(long[] ids, String[] rawIds, Author[] authors, long[] createdAtEpochSeconds,
+                        byte[] text, int[] textOffsets) {
+    this.ids = ids;
+    this.rawIds = rawIds;
+    this.authors = authors;
+    this.createdAtEpochSeconds = createdAtEpochSeconds;
+    this.text = text;
+    this.textOffsets = textOffsets;
+  }
+
+  public static CompactTweets of(List<Tweet> tweets) {
+    int n = tweets.size();
+    long[] ids = new long[n];
+    String[] rawIds = null;
+    Author[] authors = new Author[n];
+    long[] createdAt = new long[n];
+    int[] offsets = new int[n + 1];
+    byte[][] encoded = new byte[n][];
+
+    for (int i = 0; i < n; i++) {
+      Tweet t = tweets.get(i);
+      long id = parseId(t.id());
+      if (id < 0 && rawIds == null) {
+        rawIds = new String[n];
+        for (int j = 0; j < i; j++) {
+          rawIds[j] = Long.toString(ids[j]);
+        }
+      }
+      ids[i] = id;
+      if (rawIds != null) {
+        rawIds[i] = t.id();
+      }
+      authors[i] = intern(t.authorId(), t.authorName(), t.authorUsername());
+      createdAt[i] = t.createdAt() == null ? NO_TIMESTAMP : t.createdAt().getEpochSecond();
+      encoded[i] = t.text() == null ? new byte[0] : t.text().getBytes(StandardCharsets.UTF_8);
+      offsets[i + 1] = offsets[i] + encoded[i].length;
+    }
+
+    byte[] text = new byte[offsets[n]];
+    for (int i = 0; i < n; i++) {
+      System.arraycopy(encoded[i], 0, text, offsets[i], encoded[i].length);
+    }
+    return new CompactTweets(ids, rawIds, authors, createdAt, text, offsets);
+  }
+
+  public int size() {
+    return ids.length;
+  }
+
+  public Tweet get(int i) {
+    Author a = authors[i];
+    String id = rawIds != null ? rawIds[i] : Long.toString(ids[i]);
+    String body = new String(text, textOffsets[i], textOffsets[i + 1] - textOffsets[i], StandardCharsets.UTF_8);
+    Instant createdAt = createdAtEpochSeconds[i] == NO_TIMESTAMP ? null : Instant.ofEpochSecond(createdAtEpochSeconds[i]);
+    return new Tweet(id, a.id(), a.name(), a.username(), body, createdAt);
+  }
+
+  public List<Tweet> toTweets() {
+    List<Tweet> out = new ArrayList<>(ids.length);
+    for (int i = 0; i < ids.length; i++) {
+      out.add(get(i));
+    }
+    return out;
+  }
+
+  /** Returns the canonical instance for this author, shared by every batch that references it. */
+  static Author intern(String id, String name, String username) {
+    Author candidate = new Author(id, name, username);
+    synchronized (AUTHORS) {
+      WeakReference<Author> ref = AUTHORS.get(candidate);
+      Author existing = ref == null ? null : ref.get();
+      if (existing != null) {
+        return existing;
+      }
+      AUTHORS.put(candidate, new WeakReference<>(candidate));
+      return candidate;
+    }
+  }
+
+  static long parseId(String id) {
+    if (id == null || id.isEmpty() || id.length() > 19) return -1;
+    for (int i = 0; i < id.length(); i++) {
+      char c = id.charAt(i);
+      if (c < '0' || c > '9') return -1;
+    }
+    // Leading zeros would not survive the round trip through a long.
+    if (id.length() > 1 && id.charAt(0) == '0') return -1;
+    try {
+      return Long.parseLong(id);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  record Author(String id, String name, String username) {}
+}
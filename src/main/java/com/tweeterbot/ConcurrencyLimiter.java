@@ -0,0 +1,69 @@
+package com.tweeterbot;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking cap on the number of concurrent calls to one upstream. Work beyond the limit waits
+ * in a FIFO queue instead of parking a thread, and is started as soon as a running call finishes.
+ * Cancelling a returned future removes queued work before it starts, or cancels it once running.
+ */
+public class ConcurrencyLimiter {
+  private final int limit;
+  private final Deque<Runnable> waiting = new ArrayDeque<>();
+  private int active;
+
+  public ConcurrencyLimiter(int limit) {
+    this.limit = Math.max(1, limit);
+  }
+
+  public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Runnable start = () -> {
+      if (result.isDone()) {
+        release(); // cancelled while queued
+        return;
+      }
+      CompletableFuture<T> call;
+      try {
+        call = task.get();
+      } catch (RuntimeException e) {
+        call = CompletableFuture.failedFuture(e);
+      }
+      CompletableFuture<T> running = call;
+      result.whenComplete((r, e) -> running.cancel(true));
+      running.whenComplete((value, error) -> {
+        release();
+        if (error != null) {
+          result.completeExceptionally(error);
+        } else {
+          result.complete(value);
+        }
+      });
+    };
+
+    synchronized (this) {
+      if (active >= limit) {
+        waiting.add(start);
+        return result;
+      }
+      active++;
+    }
+    start.run();
+    return result;
+  }
+
+  private void release() {
+    Runnable next;
+    synchronized (this) {
+      next = waiting.poll();
+      if (next == null) {
+        active--;
+        return;
+      }
+    }
+    next.run(); // hand the slot straight to the next waiter
+  }
+}
@@ -0,0 +1,33 @@
+package com.tweeterbot;
+
+/** Environment lookups shared by the server, the CLI and each class's {@code fromEnv()}. */
+final class Config {
+  private Config() {}
+
+  /** {@code name} parsed as an int, or {@code defaultValue} when it is unset, blank or not a number. */
+  static int envInt(String name, int defaultValue) {
+    String raw = System.getenv(name);
+    if (raw == null || raw.isBlank()) return defaultValue;
+    try {
+      return Integer.parseInt(raw.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * The first env var {@code engine} needs that is unset, or null. The local engine needs no OpenAI
+   * key; without one its posts are withheld instead of moderated.
+   */
+  static String missingCredential(SummaryEngine engine) {
+    String xToken = System.getenv("X_BEARER_TOKEN");
+    if (xToken == null || xToken.isBlank()) {
+      return "X_BEARER_TOKEN";
+    }
+    String openAiKey = System.getenv("OPENAI_API_KEY");
+    if (engine != SummaryEngine.LOCAL && (openAiKey == null || openAiKey.isBlank())) {
+      return "OPENAI_API_KEY";
+    }
+    return null;
+  }
+}
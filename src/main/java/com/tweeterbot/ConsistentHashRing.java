@@ -0,0 +1,48 @@
+package com.tweeterbot;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps keys to nodes with consistent hashing. Each node is placed on the ring at
+ * {@link #VIRTUAL_NODES} points so keys spread evenly and adding or removing a node only moves
+ * the keys adjacent to its points.
+ */
+public class ConsistentHashRing {
+  private static final int VIRTUAL_NODES = 128;
+
+  private final TreeMap<Long, String> ring = new TreeMap<>();
+
+  public ConsistentHashRing(List<String> nodes) {
+    if (nodes.isEmpty()) {
+      throw new IllegalArgumentException("At least one node is required");
+    }
+    for (String node : nodes) {
+      for (int i = 0; i < VIRTUAL_NODES; i++) {
+        ring.put(hash(node + "#" + i), node);
+      }
+    }
+  }
+
+  public String nodeFor(String key) {
+    Map.Entry<Long, String> e = ring.ceilingEntry(hash(key));
+    return e != null ? e.getValue() : ring.firstEntry().getValue();
+  }
+
+  private static long hash(String s) {
+    try {
+      byte[] d = MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8));
+      long h = 0;
+      for (int i = 0; i < 8; i++) {
+        h = (h << 8) | (d[i] & 0xff);
+      }
+      return h;
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package com.tweeterbot;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Absolute point in time by which a request must be answered. Stages consult the remaining budget
+ * before starting upstream work so that a request the client has already given up on does not
+ * keep spending X or OpenAI quota.
+ */
+public final class Deadline {
+  private static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+  private final long expiresAtNanos;
+
+  private Deadline(long expiresAtNanos) {
+    this.expiresAtNanos = expiresAtNanos;
+  }
+
+  public static Deadline after(Duration budget) {
+    return new Deadline(System.nanoTime() + Math.max(0, budget.toNanos()));
+  }
+
+  public static Deadline none() {
+    return NONE;
+  }
+
+  public long remainingMillis() {
+    if (this == NONE) return Long.MAX_VALUE;
+    return Math.max(0, (expiresAtNanos - System.nanoTime()) / 1_000_000);
+  }
+
+  /** Throws if fewer than {@code minMillis} remain, so the caller does not start work it cannot finish. */
+  public void check(String stage, long minMillis) throws ExceededException {
+    long remaining = remainingMillis();
+    if (remaining < minMillis) {
+      throw new ExceededException("Deadline exceeded before " + stage + " (" + remaining + "ms left)");
+    }
+  }
+
+  public static class ExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public ExceededException(String message) {
+      super(message);
+    }
+  }
+}
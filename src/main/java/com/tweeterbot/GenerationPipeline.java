@@ -0,0 +1,285 @@
+package com.tweeterbot;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Chains the X fetch, summary and moderation calls without blocking a thread per stage.
+ * Each stage has its own timeout, and cancelling the future returned by {@link #run} aborts
+ * whichever upstream call is in flight and skips the stages that have not started yet.
+ * The summary comes from OpenAI or the local {@link Summarizer}, depending on the {@link SummaryEngine}.
+ */
+public class GenerationPipeline {
+  public static final int TARGET_TWEETS = 50;
+  public static final String WITHHELD_POST = "Suggested post withheld due to safety policies.";
+  private static final long MIN_STAGE_BUDGET_MILLIS = 250;
+  /**
+   * Reported for local summaries whose moderation call failed, timed out or was not possible (no
+   * OpenAI key); the post is withheld rather than published unchecked.
+   */
+  private static final OpenAIModerationClient.ModerationResult MODERATION_UNAVAILABLE =
+      new OpenAIModerationClient.ModerationResult(true, Map.of(), Map.of());
+
+  private final XClient xClient;
+  private final OpenAIClient ai;
+  private final OpenAIModerationClient moderation;
+  private final String model;
+  private final Duration fetchTimeout;
+  private final Duration summarizeTimeout;
+  private final Duration moderationTimeout;
+  private final ConcurrencyLimiter xLimiter;
+  private final ConcurrencyLimiter openAiLimiter;
+  private final Duration localModerationTimeout;
+  private final ConcurrencyLimiter localModerationLimiter;
+  private final Summarizer summarizer;
+  private final SummaryEngine defaultEngine;
+
+  public GenerationPipeline(XClient xClient, OpenAIClient ai, OpenAIModerationClient moderation, String model,
+                            Duration fetchTimeout, Duration summarizeTimeout, Duration moderationTimeout,
+                            ConcurrencyLimiter xLimiter, ConcurrencyLimiter openAiLimiter) {
+    this(xClient, ai, moderation, model, fetchTimeout, summarizeTimeout, moderationTimeout,
+        xLimiter, openAiLimiter, Duration.ofSeconds(2), new ConcurrencyLimiter(4),
+        new Summarizer(), SummaryEngine.OPENAI);
+  }
+
+  /**
+   * @param localModerationTimeout  moderation timeout for local summaries, kept short so the local
+   *                                engine stays fast when OpenAI is slow
+   * @param localModerationLimiter  moderation slots for local summaries, separate from
+   *                                {@code openAiLimiter} so they never wait behind summarize calls
+   */
+  public GenerationPipeline(XClient xClient, OpenAIClient ai, OpenAIModerationClient moderation, String model,
+                            Duration fetchTimeout, Duration summarizeTimeout, Duration moderationTimeout,
+                            ConcurrencyLimiter xLimiter, ConcurrencyLimiter openAiLimiter,
+                            Duration localModerationTimeout, ConcurrencyLimiter localModerationLimiter,
+                            Summarizer summarizer, SummaryEngine defaultEngine) {
+    this.xClient = xClient;
+    this.ai = ai;
+    this.moderation = moderation;
+    this.model = model;
+    this.fetchTimeout = fetchTimeout;
+    this.summarizeTimeout = summarizeTimeout;
+    this.moderationTimeout = moderationTimeout;
+    this.xLimiter = xLimiter;
+    this.openAiLimiter = openAiLimiter;
+    this.localModerationTimeout = localModerationTimeout;
+    this.localModerationLimiter = localModerationLimiter;
+    this.summarizer = summarizer;
+    this.defaultEngine = defaultEngine;
+  }
+
+  public static GenerationPipeline fromEnv() {
+    String xBase = System.getenv().getOrDefault("X_API_BASE_URL", "https://api.x.com/2");
+    String oaBase = System.getenv().getOrDefault("OPENAI_API_BASE_URL", "https://api.openai.com/v1");
+    String model = System.getenv().getOrDefault("OPENAI_MODEL", "gpt-4o-mini");
+    String moderationModel = System.getenv().getOrDefault("OPENAI_MODERATION_MODEL", "omni-moderation-latest");
+    String openAiKey = System.getenv("OPENAI_API_KEY");
+
+    return new GenerationPipeline(
+        new XClient(System.getenv("X_BEARER_TOKEN"), xBase, TweetStore.fromEnv()),
+        new OpenAIClient(openAiKey, oaBase, model,
+            Config.envInt("OPENAI_INPUT_TOKEN_BUDGET", PromptBuilder.DEFAULT_INPUT_TOKEN_BUDGET),
+            SummaryCache.fromEnv()),
+        new OpenAIModerationClient(openAiKey, oaBase, moderationModel),
+        model,
+        Duration.ofSeconds(Config.envInt("X_FETCH_TIMEOUT_SECONDS", 30)),
+        Duration.ofSeconds(Config.envInt("OPENAI_TIMEOUT_SECONDS", 60)),
+        Duration.ofSeconds(Config.envInt("MODERATION_TIMEOUT_SECONDS", 15)),
+        new ConcurrencyLimiter(Config.envInt("X_MAX_CONCURRENCY", 4)),
+        new ConcurrencyLimiter(Config.envInt("OPENAI_MAX_CONCURRENCY", 8)),
+        Duration.ofMillis(Config.envInt("LOCAL_MODERATION_TIMEOUT_MS", 2_000)),
+        new ConcurrencyLimiter(Config.envInt("LOCAL_MODERATION_MAX_CONCURRENCY", 4)),
+        new Summarizer(Config.envInt("SUMMARY_IDF_WINDOW", Summarizer.DEFAULT_IDF_WINDOW)),
+        SummaryEngine.fromEnv());
+  }
+
+  /**
+   * The same pipeline (clients, caches, summarizer) drawing on its own upstream limiters, so one
+   * class of traffic cannot queue up in front of another.
+   */
+  public GenerationPipeline withLimiters(ConcurrencyLimiter xLimiter, ConcurrencyLimiter openAiLimiter) {
+    return new GenerationPipeline(xClient, ai, moderation, model, fetchTimeout, summarizeTimeout, moderationTimeout,
+        xLimiter, openAiLimiter, localModerationTimeout, localModerationLimiter, summarizer, defaultEngine);
+  }
+
+  public String model() {
+    return model;
+  }
+
+  public SummaryEngine defaultEngine() {
+    return defaultEngine;
+  }
+
+  public CompletableFuture<Result> run(String topic, Consumer<String> status) {
+    return run(topic, Deadline.none(), status);
+  }
+
+  public CompletableFuture<Result> run(String topic, Deadline deadline, Consumer<String> status) {
+    return run(topic, defaultEngine, deadline, status, provisional -> {}, StageTimings.OFF);
+  }
+
+  /**
+   * Runs the stages under {@code deadline}: a stage is not started when too little budget remains,
+   * and its timeout is clipped to whatever budget is left. With {@link SummaryEngine#LOCAL_FIRST},
+   * {@code provisional} receives the local summary (unmoderated, so without a suggested post) before
+   * OpenAI is called. Stage, page and parse durations go to {@code timings}.
+   */
+  public CompletableFuture<Result> run(String topic, SummaryEngine engine, Deadline deadline,
+                                       Consumer<String> status, Consumer<Result> provisional, StageTimings timings) {
+    CompletableFuture<Result> run = new CompletableFuture<>();
+
+    status.accept("Fetching recent tweets...");
+    stage(run, deadline, "X fetch", fetchTimeout, xLimiter, timings,
+        () -> xClient.fetchRecentUniqueAuthorsAsync(topic, TARGET_TWEETS, timings))
+        .thenCompose(tweets -> {
+          summarizer.observe(topic.trim().toLowerCase(Locale.ROOT), tweets);
+          if (engine == SummaryEngine.OPENAI) {
+            return summarizeWithOpenAi(run, deadline, status, timings, topic, tweets);
+          }
+
+          long mark = timings.mark();
+          OpenAIClient.SummaryPayload local = summarizer.summarizePayload(topic, tweets);
+          timings.add("local_summarize", mark);
+          if (engine == SummaryEngine.LOCAL) {
+            return moderate(run, deadline, status, timings, tweets, local, SummaryEngine.LOCAL);
+          }
+
+          OpenAIClient.SummaryPayload draft = local.copy();
+          draft.suggestedPost = null;
+          provisional.accept(new Result(tweets, draft, null, SummaryEngine.LOCAL));
+          return summarizeWithOpenAi(run, deadline, status, timings, topic, tweets)
+              .handle((result, error) -> error == null || run.isDone()
+                  ? CompletableFuture.completedFuture(result)
+                  : moderate(run, deadline, status, timings, tweets, local, SummaryEngine.LOCAL))
+              .thenCompose(f -> f);
+        })
+        .whenComplete((result, error) -> {
+          if (error != null) {
+            run.completeExceptionally(unwrap(error));
+          } else {
+            run.complete(result);
+          }
+        });
+
+    return run;
+  }
+
+  private CompletableFuture<Result> summarizeWithOpenAi(CompletableFuture<?> run, Deadline deadline,
+                                                        Consumer<String> status, StageTimings timings,
+                                                        String topic, List<Tweet> tweets) {
+    status.accept("Summarizing with OpenAI...");
+    return stage(run, deadline, "OpenAI summarize", summarizeTimeout, openAiLimiter, timings,
+        () -> ai.summarizeAsync(topic, tweets, timings))
+        .thenCompose(summary -> moderate(run, deadline, status, timings, tweets, summary, SummaryEngine.OPENAI));
+  }
+
+  /**
+   * Moderates the suggested post. A failed moderation call fails an OpenAI result like any other
+   * stage. A local result is moderated on its own slots with a short timeout, and a failure (or no
+   * OpenAI key at all) only withholds its post, so the local engine still answers quickly when
+   * OpenAI is slow or unreachable.
+   */
+  private CompletableFuture<Result> moderate(CompletableFuture<?> run, Deadline deadline, Consumer<String> status,
+                                             StageTimings timings, List<Tweet> tweets,
+                                             OpenAIClient.SummaryPayload summary, SummaryEngine engine) {
+    CompletableFuture<OpenAIModerationClient.ModerationResult> mod;
+    if (engine == SummaryEngine.OPENAI) {
+      status.accept("Running moderation...");
+      mod = stage(run, deadline, "Moderation", moderationTimeout, openAiLimiter, timings,
+          () -> moderation.moderateAsync(summary.suggestedPost, timings));
+    } else if (!moderation.configured()) {
+      mod = CompletableFuture.completedFuture(MODERATION_UNAVAILABLE);
+    } else {
+      status.accept("Running moderation...");
+      mod = stage(run, deadline, "Moderation", localModerationTimeout, localModerationLimiter, timings,
+          () -> moderation.moderateAsync(summary.suggestedPost, timings))
+          .exceptionally(error -> MODERATION_UNAVAILABLE);
+    }
+    return mod.thenApply(result -> {
+      if (result.flagged()) {
+        summary.suggestedPost = WITHHELD_POST;
+      }
+      return new Result(tweets, summary, result, engine);
+    });
+  }
+
+  /** Runs one upstream call; its time from start to completion, excluding any wait for a slot, is added to {@code timings}. */
+  private <T> CompletableFuture<T> stage(CompletableFuture<?> run, Deadline deadline, String name, Duration timeout,
+                                         ConcurrencyLimiter limiter, StageTimings timings,
+                                         Supplier<CompletableFuture<T>> call) {
+    if (run.isDone()) {
+      return CompletableFuture.failedFuture(new CancellationException(name + " skipped: generation cancelled"));
+    }
+
+    // The budget is checked when the call actually starts, after any wait for an upstream slot.
+    long[] startedMark = new long[1];
+    CompletableFuture<T> f = limiter.submit(() -> {
+      try {
+        deadline.check(name, MIN_STAGE_BUDGET_MILLIS);
+      } catch (Deadline.ExceededException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+      startedMark[0] = timings.mark();
+      // Hand the limiter the client's own future: cancelling it must abort the upstream call, and the
+      // slot must stay taken until that call has really finished.
+      CompletableFuture<T> upstream = call.get();
+      upstream.orTimeout(Math.min(timeout.toMillis(), deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+      return upstream;
+    });
+    if (deadline != Deadline.none()) {
+      f.orTimeout(deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+    }
+    run.whenComplete((r, e) -> f.cancel(true));
+
+    return f.handle((value, error) -> {
+      // Recorded here, ahead of every later stage and of the run itself, so a response built as soon
+      // as the run fails still includes this stage.
+      if (startedMark[0] != 0) {
+        timings.add(name.toLowerCase(Locale.ROOT).replace(' ', '_'), startedMark[0]);
+      }
+      if (error == null) {
+        return value;
+      }
+      Throwable cause = unwrap(error);
+      if (cause instanceof TimeoutException && deadline.remainingMillis() < MIN_STAGE_BUDGET_MILLIS) {
+        throw new CompletionException(new Deadline.ExceededException("Deadline exceeded during " + name));
+      }
+      if (cause instanceof TimeoutException) {
+        throw new CompletionException(new TimeoutException(name + " timed out after " + timeout.toSeconds() + "s"));
+      }
+      throw new CompletionException(cause);
+    });
+  }
+
+  static Throwable unwrap(Throwable t) {
+    Throwable cur = t;
+    while ((cur instanceof CompletionException || cur instanceof ExecutionException) && cur.getCause() != null) {
+      cur = cur.getCause();
+    }
+    return cur;
+  }
+
+  /** Message for reporting a failure; falls back to the exception type (HttpClient throws ConnectException without one). */
+  static String errorMessage(Throwable t) {
+    Throwable cause = unwrap(t);
+    String message = cause.getMessage();
+    return message == null || message.isBlank() ? cause.getClass().getName() : message;
+  }
+
+  public record Result(
+      List<Tweet> tweets,
+      OpenAIClient.SummaryPayload summary,
+      OpenAIModerationClient.ModerationResult moderation,
+      SummaryEngine engine
+  ) {}
+}
@@ -0,0 +1,104 @@
+package com.tweeterbot;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for uncached generations. At most {@code maxConcurrent} run at once and at most
+ * {@code maxQueued} wait behind them. A request is rejected up front when the queue is full or when
+ * the estimated wait (queue position times the moving average generation latency) exceeds either
+ * the configured ceiling or the request's own deadline.
+ */
+public class LoadShedder {
+  private static final double EWMA_ALPHA = 0.2;
+
+  private final Semaphore permits;
+  private final int maxConcurrent;
+  private final int maxQueued;
+  private final long maxWaitMillis;
+  private final AtomicInteger queued = new AtomicInteger();
+  private volatile double avgLatencyMillis;
+
+  public LoadShedder(int maxConcurrent, int maxQueued, long maxWaitMillis, long initialLatencyMillis) {
+    this.maxConcurrent = Math.max(1, maxConcurrent);
+    this.maxQueued = Math.max(0, maxQueued);
+    this.maxWaitMillis = maxWaitMillis;
+    this.permits = new Semaphore(this.maxConcurrent);
+    this.avgLatencyMillis = initialLatencyMillis;
+  }
+
+  public static LoadShedder fromEnv() {
+    return new LoadShedder(
+        Config.envInt("MAX_CONCURRENT_GENERATIONS", 8),
+        Config.envInt("MAX_QUEUED_GENERATIONS", 16),
+        Config.envInt("MAX_ESTIMATED_WAIT_MS", 20_000),
+        5_000);
+  }
+
+  /**
+   * Returns an admitted permit, waiting in the queue if there is room, or a rejected one carrying a
+   * Retry-After hint. Always close the returned permit.
+   */
+  public Permit admit(Deadline deadline) throws InterruptedException {
+    if (permits.tryAcquire()) {
+      return new Permit(true, 0);
+    }
+
+    int position = queued.incrementAndGet();
+    try {
+      long estimatedWait = estimatedWaitMillis(position);
+      if (position > maxQueued || estimatedWait > maxWaitMillis || estimatedWait > deadline.remainingMillis()) {
+        return rejected(estimatedWait);
+      }
+      if (permits.tryAcquire(Math.min(maxWaitMillis, deadline.remainingMillis()), TimeUnit.MILLISECONDS)) {
+        return new Permit(true, 0);
+      }
+      return rejected(estimatedWait);
+    } finally {
+      queued.decrementAndGet();
+    }
+  }
+
+  private long estimatedWaitMillis(int position) {
+    long rounds = (position + maxConcurrent - 1) / maxConcurrent;
+    return (long) (rounds * avgLatencyMillis);
+  }
+
+  private Permit rejected(long estimatedWaitMillis) {
+    long seconds = Math.max(1, (estimatedWaitMillis + 999) / 1000);
+    return new Permit(false, seconds);
+  }
+
+  private void record(long latencyMillis) {
+    avgLatencyMillis = EWMA_ALPHA * latencyMillis + (1 - EWMA_ALPHA) * avgLatencyMillis;
+  }
+
+  public class Permit implements AutoCloseable {
+    private final boolean admitted;
+    private final long retryAfterSeconds;
+    private final long admittedAtNanos = System.nanoTime();
+    private boolean closed;
+
+    private Permit(boolean admitted, long retryAfterSeconds) {
+      this.admitted = admitted;
+      this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public boolean admitted() {
+      return admitted;
+    }
+
+    public long retryAfterSeconds() {
+      return retryAfterSeconds;
+    }
+
+    @Override
+    public synchronized void close() {
+      if (!admitted || closed) return;
+      closed = true;
+      record((System.nanoTime() - admittedAtNanos) / 1_000_000);
+      permits.release();
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.tweeterbot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Detects near-identical tweet texts (copy-pasted spam, templated promos) by the Jaccard similarity
+ * of their word sets, estimated from {@link #HASHES}-value MinHash signatures. Two texts are
+ * near-duplicates when at least {@link #MIN_SIMILARITY} of their signature positions agree. A
+ * one-word edit to a ten-word template still shares about 0.8 of its words, while distinct tweets on
+ * the same topic rarely share more than 0.25. (A SimHash over the same words was tried first; in
+ * short tweets a single edit flips so many bits that about a quarter of one-word edits escaped.)
+ * A filter holds one fetch's selection of a few dozen tweets, so a new signature is simply
+ * compared with every accepted one.
+ */
+public final class NearDuplicateFilter {
+  public static final int HASHES = 64;
+  public static final double MIN_SIMILARITY = 0.5;
+  private static final int MIN_MATCHES = (int) Math.ceil(HASHES * MIN_SIMILARITY);
+  private static final Pattern NOISE = Pattern.compile("https?://\\S+|@\\w+");
+
+  private final List<int[]> accepted = new ArrayList<>();
+
+  /** Records the signature and returns true, or returns false if it is a near-duplicate of one already added. */
+  public boolean add(int[] signature) {
+    for (int[] other : accepted) {
+      if (matches(signature, other) >= MIN_MATCHES) {
+        return false;
+      }
+    }
+    accepted.add(signature);
+    return true;
+  }
+
+  /** Estimated Jaccard similarity of the word sets behind two signatures. */
+  static double similarity(int[] a, int[] b) {
+    return matches(a, b) / (double) HASHES;
+  }
+
+  /**
+   * MinHash signature of the text's distinct words. URLs, mentions and pure numbers are ignored so
+   * that templated posts differing only in a link or a counter get identical signatures.
+   */
+  public static int[] fingerprint(String text) {
+    int[] signature = new int[HASHES];
+    Arrays.fill(signature, Integer.MAX_VALUE);
+    if (text == null || text.isEmpty()) return signature;
+
+    Set<String> words = new HashSet<>();
+    TweetStore.terms(NOISE.matcher(text).replaceAll(" "), term -> {
+      if (!isNumber(term)) words.add(term);
+    });
+
+    for (String word : words) {
+      long h = hash(word);
+      for (int i = 0; i < HASHES; i++) {
+        // One independent-looking hash per position: the word hash re-mixed with a per-position offset.
+        int value = (int) (mix(h + (i + 1) * 0x9e3779b97f4a7c15L) >>> 33);
+        if (value < signature[i]) {
+          signature[i] = value;
+        }
+      }
+    }
+    return signature;
+  }
+
+  private static int matches(int[] a, int[] b) {
+    int same = 0;
+    for (int i = 0; i < HASHES; i++) {
+      if (a[i] == b[i]) same++;
+    }
+    return same;
+  }
+
+  /** FNV-1a followed by the MurmurHash3 finalizer for good bit dispersion. */
+  private static long hash(String s) {
+    long h = 0xcbf29ce484222325L;
+    for (int i = 0; i < s.length(); i++) {
+      h ^= s.charAt(i);
+      h *= 0x100000001b3L;
+    }
+    return mix(h);
+  }
+
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private static boolean isNumber(String term) {
+    for (int i = 0; i < term.length(); i++) {
+      if (!Character.isDigit(term.charAt(i))) return false;
+    }
+    return true;
+  }
+}
@@ -12,23 +12,153 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class OpenAIClient {
+  private static final String PROMPT_PLACEHOLDER = "__TWEETERBOT_PROMPT__";
+  /** Bump whenever the system prompt or response schema changes, so cached summaries are not reused. */
+  private static final int SCHEMA_VERSION = 1;
+
   private final String apiKey;
   private final String baseUrl;
   private final String model;
   private final HttpClient http;
   private final ObjectMapper mapper;
+  private final String requestPrefix;
+  private final String requestSuffix;
+  private final PromptBuilder prompts;
+  private final SummaryCache cache;
 
   public OpenAIClient(String apiKey, String baseUrl, String model) {
+    this(apiKey, baseUrl, model, PromptBuilder.DEFAULT_INPUT_TOKEN_BUDGET, null);
+  }
+
+  /**
+   * @param inputTokenBudget estimated input tokens allowed per request, including the system prompt
+   *                         and schema; tweets are trimmed or dropped to stay under it
+   * @param cache            optional summary cache keyed by tweet content; null disables it
+   */
+  public OpenAIClient(String apiKey, String baseUrl, String model, int inputTokenBudget, SummaryCache cache) {
     this.apiKey = apiKey;
     this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
     this.model = model;
     this.http = HttpClient.newHttpClient();
     this.mapper = new ObjectMapper();
+    this.cache = cache;
+
+    String[] template = buildRequestTemplate();
+    this.requestPrefix = template[0];
+    this.requestSuffix = template[1];
+    int fixedTokens = PromptBuilder.estimateTokens(requestPrefix) + PromptBuilder.estimateTokens(requestSuffix);
+    this.prompts = new PromptBuilder(Math.max(0, inputTokenBudget - fixedTokens));
   }
 
   public SummaryPayload summarize(String topic, List<Tweet> tweets) throws IOException, InterruptedException {
+    String key = cache == null ? null : SummaryCache.key(model, SCHEMA_VERSION, tweets);
+    SummaryPayload cached = lookup(key, StageTimings.OFF);
+    if (cached != null) {
+      return cached;
+    }
+
+    HttpResponse<String> resp = http.send(buildRequest(topic, tweets, StageTimings.OFF), HttpResponse.BodyHandlers.ofString());
+    SummaryPayload payload = parseResponse(resp, StageTimings.OFF);
+    if (key != null) {
+      cache.put(key, payload);
+    }
+    return payload;
+  }
+
+  /**
+   * Non-blocking variant of {@link #summarize}. Cancelling the returned future aborts the upstream call.
+   */
+  public CompletableFuture<SummaryPayload> summarizeAsync(String topic, List<Tweet> tweets) {
+    return summarizeAsync(topic, tweets, StageTimings.OFF);
+  }
+
+  /** As above, recording the summary cache lookup, request serialization and response parse into {@code timings}. */
+  public CompletableFuture<SummaryPayload> summarizeAsync(String topic, List<Tweet> tweets, StageTimings timings) {
+    StageEvents.OpenAISummarize event = new StageEvents.OpenAISummarize();
+    event.begin();
+    event.model = model;
+    event.tweetCount = tweets.size();
+
+    String key = cache == null ? null : SummaryCache.key(model, SCHEMA_VERSION, tweets);
+    SummaryPayload cached = lookup(key, timings);
+    if (cached != null) {
+      event.cached = true;
+      event.succeeded = true;
+      event.commit();
+      return CompletableFuture.completedFuture(cached);
+    }
+
+    HttpRequest req;
+    try {
+      req = buildRequest(topic, tweets, timings);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    CompletableFuture<SummaryPayload> result = new CompletableFuture<>();
+    CompletableFuture<HttpResponse<String>> call = http.sendAsync(req, HttpResponse.BodyHandlers.ofString());
+    result.whenComplete((r, e) -> {
+      call.cancel(true);
+      event.succeeded = e == null;
+      event.commit();
+    });
+    call.whenComplete((resp, error) -> {
+      if (error != null) {
+        result.completeExceptionally(error);
+        return;
+      }
+      try {
+        SummaryPayload payload = parseResponse(resp, timings);
+        if (key != null) {
+          cache.put(key, payload);
+        }
+        result.complete(payload);
+      } catch (IOException | RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+
+  private SummaryPayload lookup(String key, StageTimings timings) {
+    if (key == null) {
+      return null;
+    }
+    StageEvents.CacheLookup event = new StageEvents.CacheLookup();
+    event.begin();
+    long mark = timings.mark();
+    SummaryPayload cached = cache.get(key);
+    timings.add("cache_lookup", mark);
+    event.cache = "summary";
+    event.hit = cached != null;
+    event.commit();
+    return cached;
+  }
+
+  private HttpRequest buildRequest(String topic, List<Tweet> tweets, StageTimings timings) throws IOException {
+    StageEvents.Serialization event = new StageEvents.Serialization();
+    event.begin();
+    long mark = timings.mark();
+    String body = requestPrefix + mapper.writeValueAsString(prompts.build(topic, tweets)) + requestSuffix;
+    timings.add("serialization", mark);
+    event.target = "openai.request";
+    event.bytes = body.length();
+    event.commit();
+    return HttpRequest.newBuilder(URI.create(baseUrl + "/responses"))
+        .header("Authorization", "Bearer " + apiKey)
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body))
+        .build();
+  }
+
+  /**
+   * Serializes the static part of the request (model, system prompt, JSON schema) once and splits it
+   * around the user prompt, so each call only has to splice in the escaped tweet block.
+   */
+  private String[] buildRequestTemplate() {
     ObjectNode root = mapper.createObjectNode();
     root.put("model", model);
     var input = root.putArray("input");
@@ -37,7 +167,7 @@ public class OpenAIClient {
     sys.put("content", "You are a social media assistant. Create a concise summary and an original new post based strictly on the provided tweets. Do not invent facts, do not quote verbatim, and keep the suggested post within 280 characters. Return JSON only.");
     ObjectNode user = input.addObject();
     user.put("role", "user");
-    user.put("content", buildPrompt(topic, tweets));
+    user.put("content", PROMPT_PLACEHOLDER);
 
     ObjectNode text = root.putObject("text");
     ObjectNode format = text.putObject("format");
@@ -62,23 +192,30 @@ public class OpenAIClient {
 
     root.put("temperature", 0.4);
 
-    HttpRequest req = HttpRequest.newBuilder(URI.create(baseUrl + "/responses"))
-        .header("Authorization", "Bearer " + apiKey)
-        .header("Content-Type", "application/json")
-        .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(root)))
-        .build();
+    String json = root.toString();
+    String quoted = '"' + PROMPT_PLACEHOLDER + '"';
+    int at = json.indexOf(quoted);
+    return new String[] { json.substring(0, at), json.substring(at + quoted.length()) };
+  }
 
-    HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+  private SummaryPayload parseResponse(HttpResponse<String> resp, StageTimings timings) throws IOException {
     if (resp.statusCode() != 200) {
       throw new IOException("OpenAI API error: HTTP " + resp.statusCode() + " -> " + resp.body());
     }
 
+    StageEvents.JsonParse event = new StageEvents.JsonParse();
+    event.begin();
+    long mark = timings.mark();
     String outputText = extractOutputText(resp.body());
     if (outputText == null || outputText.isBlank()) {
       throw new IOException("OpenAI API response missing output_text.");
     }
 
     SummaryPayload payload = mapper.readValue(outputText, SummaryPayload.class);
+    timings.add("json_parse", mark);
+    event.source = "openai.responses";
+    event.bytes = resp.body().length();
+    event.commit();
     payload.suggestedPost = trimTo(payload.suggestedPost, 280);
     return payload;
   }
@@ -101,22 +238,6 @@ public class OpenAIClient {
     return null;
   }
 
-  private String buildPrompt(String topic, List<Tweet> tweets) {
-    StringBuilder sb = new StringBuilder();
-    sb.append("Topic: ").append(topic).append("\n");
-    sb.append("Tweets:\n");
-    int i = 1;
-    for (Tweet t : tweets) {
-      sb.append(i).append(") ");
-      sb.append(t.authorName()).append(" (@").append(t.authorUsername()).append(") - ");
-      sb.append(t.text().replaceAll("\\s+", " ").trim());
-      sb.append("\n");
-      i++;
-    }
-    sb.append("\nReturn JSON only.");
-    return sb.toString();
-  }
-
   private String trimTo(String s, int max) {
     if (s == null) return "";
     if (s.length() <= max) return s;
@@ -137,5 +258,15 @@ public class OpenAIClient {
       this.keywords = new ArrayList<>();
       this.bullets = new ArrayList<>();
     }
+
+    /** Copy that can be modified (e.g. when moderation withholds the post) without touching this one. */
+    public SummaryPayload copy() {
+      SummaryPayload c = new SummaryPayload();
+      c.summary = summary;
+      c.suggestedPost = suggestedPost;
+      c.keywords = keywords == null ? new ArrayList<>() : new ArrayList<>(keywords);
+      c.bullets = bullets == null ? new ArrayList<>() : new ArrayList<>(bullets);
+      return c;
+    }
   }
 }
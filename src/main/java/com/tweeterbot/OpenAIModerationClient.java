@@ -11,6 +11,7 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class OpenAIModerationClient {
   private final String apiKey;
@@ -27,23 +28,83 @@ public class OpenAIModerationClient {
     this.mapper = new ObjectMapper();
   }
 
+  /** Whether an API key is set; without one every call would be rejected. */
+  public boolean configured() {
+    return apiKey != null && !apiKey.isBlank();
+  }
+
   public ModerationResult moderate(String text) throws IOException, InterruptedException {
+    HttpResponse<String> resp = http.send(buildRequest(text), HttpResponse.BodyHandlers.ofString());
+    return parseResponse(resp, StageTimings.OFF);
+  }
+
+  /**
+   * Non-blocking variant of {@link #moderate}. Cancelling the returned future aborts the upstream call.
+   */
+  public CompletableFuture<ModerationResult> moderateAsync(String text) {
+    return moderateAsync(text, StageTimings.OFF);
+  }
+
+  /** As above, recording the response parse into {@code timings}. */
+  public CompletableFuture<ModerationResult> moderateAsync(String text, StageTimings timings) {
+    StageEvents.Moderation event = new StageEvents.Moderation();
+    event.begin();
+    event.model = model;
+
+    HttpRequest req;
+    try {
+      req = buildRequest(text);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    CompletableFuture<ModerationResult> result = new CompletableFuture<>();
+    CompletableFuture<HttpResponse<String>> call = http.sendAsync(req, HttpResponse.BodyHandlers.ofString());
+    result.whenComplete((r, e) -> {
+      call.cancel(true);
+      event.succeeded = e == null;
+      event.flagged = r != null && r.flagged();
+      event.commit();
+    });
+    call.whenComplete((resp, error) -> {
+      if (error != null) {
+        result.completeExceptionally(error);
+        return;
+      }
+      try {
+        result.complete(parseResponse(resp, timings));
+      } catch (IOException | RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+    });
+    return result;
+  }
+
+  private HttpRequest buildRequest(String text) throws IOException {
     ObjectNode root = mapper.createObjectNode();
     root.put("model", model);
     root.put("input", text);
 
-    HttpRequest req = HttpRequest.newBuilder(URI.create(baseUrl + "/moderations"))
+    return HttpRequest.newBuilder(URI.create(baseUrl + "/moderations"))
         .header("Authorization", "Bearer " + apiKey)
         .header("Content-Type", "application/json")
         .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(root)))
         .build();
+  }
 
-    HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
+  private ModerationResult parseResponse(HttpResponse<String> resp, StageTimings timings) throws IOException {
     if (resp.statusCode() != 200) {
       throw new IOException("OpenAI Moderation API error: HTTP " + resp.statusCode() + " -> " + resp.body());
     }
 
+    StageEvents.JsonParse event = new StageEvents.JsonParse();
+    event.begin();
+    long mark = timings.mark();
     JsonNode rootNode = mapper.readTree(resp.body());
+    timings.add("json_parse", mark);
+    event.source = "openai.moderations";
+    event.bytes = resp.body().length();
+    event.commit();
     JsonNode results = rootNode.path("results");
     if (!results.isArray() || results.isEmpty()) {
       return new ModerationResult(false, Map.of(), Map.of());
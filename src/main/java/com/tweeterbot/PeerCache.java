@@ -0,0 +1,193 @@
+package com.tweeterbot;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional cluster mode: a static list of peers shares one logical topic cache. Each normalized
+ * topic has an owner chosen by consistent hashing. Other nodes ask the owner before generating,
+ * and push what they generate to it afterwards. Every failure here is soft: an unreachable owner
+ * is skipped for a short cooldown and the caller simply generates locally. Configuration errors are
+ * not: every node must list the same peers (itself included) and share a secret, since the internal
+ * endpoint accepts cache writes.
+ */
+public class PeerCache {
+  public static final String SECRET_HEADER = "X-Cluster-Secret";
+  private static final long DOWN_COOLDOWN_MILLIS = 10_000;
+
+  private final String self;
+  private final ConsistentHashRing ring;
+  private final String secret;
+  private final Duration timeout;
+  private final HttpClient http;
+  private final ObjectMapper mapper;
+  private final Map<String, Long> downUntil = new ConcurrentHashMap<>();
+
+  /** @throws IllegalArgumentException if {@code self} is not one of {@code peers} or {@code secret} is blank */
+  public PeerCache(String self, List<String> peers, String secret, Duration timeout) {
+    this.self = trimSlash(self);
+    List<String> nodes = new ArrayList<>();
+    for (String peer : peers) {
+      nodes.add(trimSlash(peer));
+    }
+    // A node missing from its own list would build a ring no other node agrees with.
+    if (!nodes.contains(this.self)) {
+      throw new IllegalArgumentException("CLUSTER_SELF " + self + " is not listed in CLUSTER_PEERS");
+    }
+    if (secret == null || secret.isBlank()) {
+      throw new IllegalArgumentException("CLUSTER_SECRET is required when CLUSTER_PEERS is set");
+    }
+    this.ring = new ConsistentHashRing(nodes);
+    this.secret = secret;
+    this.timeout = timeout;
+    this.http = HttpClient.newBuilder().connectTimeout(timeout).build();
+    this.mapper = new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+  }
+
+  /**
+   * Returns null unless {@code CLUSTER_PEERS} is set.
+   *
+   * @throws IllegalArgumentException if cluster mode is incomplete or inconsistent
+   */
+  public static PeerCache fromEnv() {
+    String peers = System.getenv("CLUSTER_PEERS");
+    String self = System.getenv("CLUSTER_SELF");
+    if (peers == null || peers.isBlank()) {
+      return null;
+    }
+    if (self == null || self.isBlank()) {
+      throw new IllegalArgumentException("CLUSTER_SELF is required when CLUSTER_PEERS is set");
+    }
+    List<String> list = new ArrayList<>();
+    for (String p : peers.split(",")) {
+      if (!p.isBlank()) list.add(p.trim());
+    }
+    return new PeerCache(self.trim(), list, System.getenv("CLUSTER_SECRET"),
+        Duration.ofMillis(Config.envInt("CLUSTER_PEER_TIMEOUT_MS", 500)));
+  }
+
+  public boolean authorized(String presentedSecret) {
+    return presentedSecret != null && MessageDigest.isEqual(
+        secret.getBytes(StandardCharsets.UTF_8), presentedSecret.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Asks the owner for {@code normalized}. Completes with null on a miss, when this node is the
+   * owner, or when the owner is down; never completes exceptionally.
+   */
+  public CompletableFuture<Entry> fetchAsync(String normalized) {
+    String owner = ring.nodeFor(normalized);
+    if (owner.equals(self) || isDown(owner)) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    HttpRequest req = request(owner, normalized).GET().build();
+    return http.sendAsync(req, HttpResponse.BodyHandlers.ofString())
+        .thenApply(resp -> {
+          if (resp.statusCode() != 200) return null;
+          try {
+            return readEntry(resp.body());
+          } catch (IOException e) {
+            return null;
+          }
+        })
+        .exceptionally(error -> {
+          markDown(owner);
+          return null;
+        });
+  }
+
+  /** Pushes a freshly generated payload to its owner in the background. */
+  public void fill(String normalized, Map<String, Object> payload, long ttlSeconds) {
+    String owner = ring.nodeFor(normalized);
+    if (owner.equals(self) || isDown(owner)) {
+      return;
+    }
+
+    try {
+      HttpRequest req = request(owner, normalized)
+          .header("Content-Type", "application/json")
+          .PUT(HttpRequest.BodyPublishers.ofByteArray(writeEntry(payload, ttlSeconds)))
+          .build();
+      http.sendAsync(req, HttpResponse.BodyHandlers.discarding())
+          .exceptionally(error -> {
+            markDown(owner);
+            return null;
+          });
+    } catch (IOException e) {
+      // Not serializable; the owner will generate it itself if asked.
+    }
+  }
+
+  public byte[] writeEntry(Map<String, Object> payload, long ttlSeconds) throws IOException {
+    Map<String, Object> body = new LinkedHashMap<>();
+    body.put("ttl_seconds", ttlSeconds);
+    body.put("payload", payload);
+    return mapper.writeValueAsBytes(body);
+  }
+
+  /** Parses a {@code {"ttl_seconds": n, "payload": {...}}} body, restoring tweets as {@link Tweet} records. */
+  public Entry readEntry(String json) throws IOException {
+    Map<String, Object> body = mapper.readValue(json, new TypeReference<>() {});
+    Object rawPayload = body.get("payload");
+    if (!(rawPayload instanceof Map<?, ?> raw)) {
+      throw new IOException("Peer cache entry missing payload");
+    }
+
+    Map<String, Object> payload = new LinkedHashMap<>();
+    for (Map.Entry<?, ?> e : raw.entrySet()) {
+      payload.put(String.valueOf(e.getKey()), e.getValue());
+    }
+    if (payload.get("tweets") != null) {
+      payload.put("tweets", mapper.convertValue(payload.get("tweets"), new TypeReference<List<Tweet>>() {}));
+    }
+    long ttl = body.get("ttl_seconds") instanceof Number n ? n.longValue() : 0;
+    return new Entry(payload, ttl);
+  }
+
+  private HttpRequest.Builder request(String node, String normalized) {
+    return HttpRequest.newBuilder(cacheUri(node, normalized))
+        .timeout(timeout)
+        .header(SECRET_HEADER, secret);
+  }
+
+  /** The internal cache endpoint on {@code node} for one cache key. */
+  static URI cacheUri(String node, String key) {
+    return URI.create(node + "/internal/cache?topic=" + URLEncoder.encode(key, StandardCharsets.UTF_8));
+  }
+
+  private boolean isDown(String node) {
+    Long until = downUntil.get(node);
+    return until != null && System.currentTimeMillis() < until;
+  }
+
+  private void markDown(String node) {
+    downUntil.put(node, System.currentTimeMillis() + DOWN_COOLDOWN_MILLIS);
+  }
+
+  private static String trimSlash(String url) {
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+
+  public record Entry(Map<String, Object> payload, long ttlSeconds) {}
+}
@@ -0,0 +1,117 @@
+package com.tweeterbot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the user prompt for {@link OpenAIClient} within an input-token budget. Each tweet is
+ * whitespace-collapsed and capped at {@link #MAX_TWEET_CHARS}; if the prompt is still over budget,
+ * tweets are dropped until it fits, starting with those that carry the least shared content per
+ * token spent. At least one tweet is always kept, however small the budget. Token counts are
+ * estimated, not exact.
+ */
+public class PromptBuilder {
+  public static final int DEFAULT_INPUT_TOKEN_BUDGET = 6_000;
+  static final int MAX_TWEET_CHARS = 400;
+
+  private final int tokenBudget;
+
+  /** @param tokenBudget tokens available for the user prompt alone */
+  public PromptBuilder(int tokenBudget) {
+    this.tokenBudget = tokenBudget;
+  }
+
+  public String build(String topic, List<Tweet> tweets) {
+    String header = "Topic: " + topic + "\nTweets:\n";
+    String footer = "\nReturn JSON only.";
+
+    List<String> lines = new ArrayList<>(tweets.size());
+    int total = estimateTokens(header) + estimateTokens(footer);
+    for (Tweet t : tweets) {
+      String line = t.authorName() + " (@" + t.authorUsername() + ") - " + clip(collapseWhitespace(t.text()));
+      lines.add(line);
+      total += estimateTokens(line) + 2; // numbering and newline
+    }
+
+    boolean[] dropped = new boolean[lines.size()];
+    if (total > tokenBudget) {
+      int[] order = byAscendingValue(tweets, lines);
+      for (int i = 0; i < order.length - 1 && total > tokenBudget; i++) {
+        dropped[order[i]] = true;
+        total -= estimateTokens(lines.get(order[i])) + 2;
+      }
+    }
+
+    StringBuilder sb = new StringBuilder(header);
+    int n = 1;
+    for (int i = 0; i < lines.size(); i++) {
+      if (dropped[i]) continue;
+      sb.append(n++).append(") ").append(lines.get(i)).append('\n');
+    }
+    sb.append(footer);
+    return sb.toString();
+  }
+
+  /** Rough token estimate for English-like text (about four characters per token). */
+  public static int estimateTokens(String s) {
+    return s == null ? 0 : (s.length() + 3) / 4;
+  }
+
+  /**
+   * Tweet indexes from least to most valuable. A tweet's value is how many of its distinct terms
+   * also appear in other tweets, per token of its prompt line, so a long tweet has to earn its
+   * space and short distinct voices are not dropped first; ties drop the later (older) tweet first.
+   */
+  private static int[] byAscendingValue(List<Tweet> tweets, List<String> lines) {
+    List<Set<String>> termsPerTweet = new ArrayList<>(tweets.size());
+    Map<String, Integer> documentFrequency = new HashMap<>();
+    for (Tweet t : tweets) {
+      Set<String> terms = new HashSet<>();
+      TweetStore.terms(t.text(), terms::add);
+      termsPerTweet.add(terms);
+      for (String term : terms) {
+        documentFrequency.merge(term, 1, Integer::sum);
+      }
+    }
+
+    double[] value = new double[tweets.size()];
+    for (int i = 0; i < value.length; i++) {
+      int shared = 0;
+      for (String term : termsPerTweet.get(i)) {
+        if (documentFrequency.get(term) > 1) shared++;
+      }
+      value[i] = (double) shared / (estimateTokens(lines.get(i)) + 2);
+    }
+
+    List<Integer> order = new ArrayList<>(value.length);
+    for (int i = 0; i < value.length; i++) order.add(i);
+    order.sort((a, b) -> value[a] != value[b] ? Double.compare(value[a], value[b]) : Integer.compare(b, a));
+    return order.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  static String collapseWhitespace(String s) {
+    if (s == null) return "";
+    StringBuilder sb = new StringBuilder(s.length());
+    boolean pendingSpace = false;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (Character.isWhitespace(c)) {
+        pendingSpace = sb.length() > 0;
+      } else {
+        if (pendingSpace) sb.append(' ');
+        pendingSpace = false;
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static String clip(String s) {
+    if (s.length() <= MAX_TWEET_CHARS) return s;
+    return s.substring(0, MAX_TWEET_CHARS - 3).trim() + "...";
+  }
+}
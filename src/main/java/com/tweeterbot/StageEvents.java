@@ -0,0 +1,74 @@
+package com.tweeterbot;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for each generation stage. Start a recording with
+ * {@code -XX:StartFlightRecording=filename=tweeterbot.jfr} (or {@code jcmd <pid> JFR.start}) and look
+ * under the "TweeterBot" category in JDK Mission Control. Without an active recording
+ * {@code begin()}/{@code commit()} do nothing and the JIT removes the event allocation.
+ */
+final class StageEvents {
+  private StageEvents() {}
+
+  @Name("com.tweeterbot.XPageFetch")
+  @Label("X Page Fetch")
+  @Category({"TweeterBot", "Upstream"})
+  @Description("One page of the X recent-search API, from request to parsed tweets; status 0 when no response arrived")
+  static final class XPageFetch extends Event {
+    @Label("Topic") String topic;
+    @Label("Page") int page;
+    @Label("Range") String range;
+    @Label("HTTP Status") int status;
+    @Label("Tweets") int tweetCount;
+    @Label("Error") String error;
+  }
+
+  @Name("com.tweeterbot.JsonParse")
+  @Label("JSON Parse")
+  @Category({"TweeterBot", "Serialization"})
+  static final class JsonParse extends Event {
+    @Label("Source") String source;
+    @Label("Size") @DataAmount long bytes;
+  }
+
+  @Name("com.tweeterbot.OpenAISummarize")
+  @Label("OpenAI Summarize")
+  @Category({"TweeterBot", "Upstream"})
+  static final class OpenAISummarize extends Event {
+    @Label("Model") String model;
+    @Label("Tweets") int tweetCount;
+    @Label("Cached") boolean cached;
+    @Label("Succeeded") boolean succeeded;
+  }
+
+  @Name("com.tweeterbot.Moderation")
+  @Label("Moderation")
+  @Category({"TweeterBot", "Upstream"})
+  static final class Moderation extends Event {
+    @Label("Model") String model;
+    @Label("Flagged") boolean flagged;
+    @Label("Succeeded") boolean succeeded;
+  }
+
+  @Name("com.tweeterbot.CacheLookup")
+  @Label("Cache Lookup")
+  @Category({"TweeterBot", "Cache"})
+  static final class CacheLookup extends Event {
+    @Label("Cache") String cache;
+    @Label("Hit") boolean hit;
+  }
+
+  @Name("com.tweeterbot.Serialization")
+  @Label("Serialization")
+  @Category({"TweeterBot", "Serialization"})
+  static final class Serialization extends Event {
+    @Label("Target") String target;
+    @Label("Size") @DataAmount long bytes;
+  }
+}
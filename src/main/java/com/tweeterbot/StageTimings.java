@@ -0,0 +1,78 @@
+package com.tweeterbot;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-request wall-clock breakdown by stage and X page, returned as {@code timings} when a client
+ * asks for it. {@link #OFF} is shared by every request that did not, and ignores all calls without
+ * reading the clock.
+ */
+public final class StageTimings {
+  public static final StageTimings OFF = new StageTimings(false);
+
+  private final boolean enabled;
+  private final long startedNanos;
+  private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+  private final List<Map<String, Object>> pages = new ArrayList<>();
+
+  private StageTimings(boolean enabled) {
+    this.enabled = enabled;
+    this.startedNanos = enabled ? System.nanoTime() : 0;
+  }
+
+  public static StageTimings start() {
+    return new StageTimings(true);
+  }
+
+  public boolean enabled() {
+    return enabled;
+  }
+
+  /** Start mark to pass to {@link #add} or {@link #page}; 0 when disabled. */
+  public long mark() {
+    return enabled ? System.nanoTime() : 0;
+  }
+
+  /** Adds the time since {@code mark} to {@code stage}; repeated stages (e.g. one parse per page) are summed. */
+  public void add(String stage, long mark) {
+    if (!enabled) return;
+    long elapsed = System.nanoTime() - mark;
+    synchronized (this) {
+      stageNanos.merge(stage, elapsed, Long::sum);
+    }
+  }
+
+  /** Records one X page; {@code error} is null unless the request got no response. */
+  public void page(int page, String range, int tweetCount, long mark, String error) {
+    if (!enabled) return;
+    Map<String, Object> entry = new LinkedHashMap<>();
+    entry.put("page", page);
+    entry.put("range", range);
+    entry.put("tweets", tweetCount);
+    entry.put("ms", millis(System.nanoTime() - mark));
+    if (error != null) {
+      entry.put("error", error);
+    }
+    synchronized (this) {
+      pages.add(entry);
+    }
+  }
+
+  public synchronized Map<String, Object> toMap() {
+    Map<String, Object> stages = new LinkedHashMap<>();
+    stageNanos.forEach((stage, nanos) -> stages.put(stage, millis(nanos)));
+
+    Map<String, Object> out = new LinkedHashMap<>();
+    out.put("total_ms", millis(System.nanoTime() - startedNanos));
+    out.put("stages_ms", stages);
+    out.put("x_pages", new ArrayList<>(pages));
+    return out;
+  }
+
+  private static double millis(long nanos) {
+    return Math.round(nanos / 1_000.0) / 1_000.0;
+  }
+}
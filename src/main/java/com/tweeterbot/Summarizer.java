@@ -5,13 +5,23 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Extractive summarizer that needs no external calls. Keywords are weighted by TF-IDF: term
+ * frequency within the topic's tweets times inverse document frequency over a bounded window of
+ * recently seen topics (one document per topic), so words that show up under every topic ("today",
+ * "new") sink and the words specific to this topic rise.
+ */
 public class Summarizer {
+  public static final int DEFAULT_IDF_WINDOW = 500;
+
   private static final Set<String> STOPWORDS = new HashSet<>(Arrays.asList(
       "a","an","the","and","or","but","if","then","than","so","to","of","for","in","on",
       "at","by","with","about","as","is","are","was","were","be","been","being","it","its",
@@ -21,56 +31,127 @@ public class Summarizer {
       "rt","via","amp","t","s"
   ));
 
+  private final int idfWindow;
+  /** Term set of each recent topic, oldest first. */
+  private final LinkedHashMap<String, Set<String>> documents = new LinkedHashMap<>();
+  private final Map<String, Integer> documentFrequency = new HashMap<>();
+
+  public Summarizer() {
+    this(DEFAULT_IDF_WINDOW);
+  }
+
+  /** @param idfWindow how many recent topics the document frequencies are computed over */
+  public Summarizer(int idfWindow) {
+    this.idfWindow = Math.max(1, idfWindow);
+  }
+
   public SummaryResult summarize(String topic, List<Tweet> tweets) {
     List<String> cleaned = tweets.stream()
         .map(t -> cleanText(t.text()))
         .filter(s -> !s.isBlank())
         .toList();
 
-    Map<String, Integer> freq = keywordFrequency(cleaned);
-    List<String> topKeywords = topKeywords(freq, 8);
+    Map<String, Double> weights = keywordWeights(cleaned);
+    List<String> topKeywords = topKeywords(weights, 8);
 
-    List<Tweet> representative = topRepresentativeTweets(tweets, freq, 4);
+    List<Tweet> representative = topRepresentativeTweets(tweets, weights, 4);
     String summary = buildSummary(topic, topKeywords, representative);
     String post = buildPost(topic, topKeywords, representative);
 
     return new SummaryResult(summary, post, topKeywords, representative);
   }
 
-  private Map<String, Integer> keywordFrequency(List<String> texts) {
+  /** {@link #summarize} in the same shape {@link OpenAIClient} returns, one bullet per representative tweet. */
+  public OpenAIClient.SummaryPayload summarizePayload(String topic, List<Tweet> tweets) {
+    SummaryResult result = summarize(topic, tweets);
+    OpenAIClient.SummaryPayload payload = new OpenAIClient.SummaryPayload();
+    payload.summary = result.summary();
+    payload.suggestedPost = result.suggestedPost();
+    payload.keywords = new ArrayList<>(result.keywords());
+    for (Tweet t : result.representativeTweets()) {
+      payload.bullets.add("@" + t.authorUsername() + ": " + trimTo(PromptBuilder.collapseWhitespace(t.text()), 160));
+    }
+    return payload;
+  }
+
+  /**
+   * Records {@code tweets} as the document for {@code topicKey}, replacing any earlier document for
+   * the same key and evicting the oldest topic once the window is full.
+   */
+  public synchronized void observe(String topicKey, List<Tweet> tweets) {
+    Set<String> terms = new HashSet<>();
+    for (Tweet t : tweets) {
+      terms.addAll(tokens(cleanText(t.text())));
+    }
+
+    forget(documents.remove(topicKey));
+    documents.put(topicKey, terms);
+    for (String term : terms) {
+      documentFrequency.merge(term, 1, Integer::sum);
+    }
+
+    Iterator<Set<String>> oldest = documents.values().iterator();
+    while (documents.size() > idfWindow) {
+      forget(oldest.next());
+      oldest.remove();
+    }
+  }
+
+  private void forget(Set<String> terms) {
+    if (terms == null) return;
+    for (String term : terms) {
+      documentFrequency.computeIfPresent(term, (k, n) -> n > 1 ? n - 1 : null);
+    }
+  }
+
+  /** Smoothed IDF, so terms never seen before still get a positive weight. */
+  private synchronized double idf(String term) {
+    return Math.log((documents.size() + 1.0) / (documentFrequency.getOrDefault(term, 0) + 1.0)) + 1.0;
+  }
+
+  private Map<String, Double> keywordWeights(List<String> texts) {
     Map<String, Integer> freq = new HashMap<>();
     for (String text : texts) {
-      for (String token : text.split("\\s+")) {
-        String w = token.toLowerCase(Locale.ROOT);
-        if (w.length() < 3 || STOPWORDS.contains(w)) continue;
-        freq.put(w, freq.getOrDefault(w, 0) + 1);
+      for (String w : tokens(text)) {
+        freq.merge(w, 1, Integer::sum);
       }
     }
-    return freq;
+
+    Map<String, Double> weights = new HashMap<>(freq.size() * 2);
+    freq.forEach((w, tf) -> weights.put(w, tf * idf(w)));
+    return weights;
+  }
+
+  private List<String> tokens(String cleaned) {
+    List<String> out = new ArrayList<>();
+    for (String token : cleaned.split("\\s+")) {
+      String w = token.toLowerCase(Locale.ROOT);
+      if (w.length() < 3 || STOPWORDS.contains(w)) continue;
+      out.add(w);
+    }
+    return out;
   }
 
-  private List<String> topKeywords(Map<String, Integer> freq, int n) {
-    return freq.entrySet().stream()
-        .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+  private List<String> topKeywords(Map<String, Double> weights, int n) {
+    return weights.entrySet().stream()
+        .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
         .limit(n)
         .map(Map.Entry::getKey)
         .collect(Collectors.toList());
   }
 
-  private List<Tweet> topRepresentativeTweets(List<Tweet> tweets, Map<String, Integer> freq, int n) {
+  private List<Tweet> topRepresentativeTweets(List<Tweet> tweets, Map<String, Double> weights, int n) {
     List<ScoredTweet> scored = new ArrayList<>();
     for (Tweet t : tweets) {
-      String cleaned = cleanText(t.text());
-      int score = 0;
-      for (String token : cleaned.split("\\s+")) {
-        String w = token.toLowerCase(Locale.ROOT);
-        score += freq.getOrDefault(w, 0);
+      double score = 0;
+      for (String w : tokens(cleanText(t.text()))) {
+        score += weights.getOrDefault(w, 0.0);
       }
       scored.add(new ScoredTweet(t, score));
     }
 
     return scored.stream()
-        .sorted(Comparator.comparingInt(ScoredTweet::score).reversed())
+        .sorted(Comparator.comparingDouble(ScoredTweet::score).reversed())
         .limit(n)
         .map(ScoredTweet::tweet)
         .collect(Collectors.toList());
@@ -153,5 +234,5 @@ public class Summarizer {
       List<Tweet> representativeTweets
   ) {}
 
-  private record ScoredTweet(Tweet tweet, int score) {}
+  private record ScoredTweet(Tweet tweet, double score) {}
 }
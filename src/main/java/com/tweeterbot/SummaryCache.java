@@ -0,0 +1,89 @@
+package com.tweeterbot;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content-addressed cache of OpenAI summaries. The key is a SHA-256 over the model, the response
+ * schema version and the tweet set in canonical order (sorted by id, each id with its text), so any
+ * request whose tweets match an earlier call gets the earlier summary back regardless of how the
+ * topic was spelled. Bounded LRU with a per-entry TTL.
+ */
+public class SummaryCache {
+  private final int maxEntries;
+  private final long ttlMillis;
+  private final Map<String, Entry> entries;
+
+  public SummaryCache(int maxEntries, long ttlSeconds) {
+    this.maxEntries = Math.max(1, maxEntries);
+    this.ttlMillis = ttlSeconds * 1000;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > SummaryCache.this.maxEntries;
+      }
+    };
+  }
+
+  /** Returns null when disabled with {@code OPENAI_RESPONSE_CACHE_MAX_ENTRIES=0}. */
+  public static SummaryCache fromEnv() {
+    int maxEntries = Config.envInt("OPENAI_RESPONSE_CACHE_MAX_ENTRIES", 1_000);
+    if (maxEntries <= 0) {
+      return null;
+    }
+    return new SummaryCache(maxEntries, Config.envInt("OPENAI_RESPONSE_CACHE_TTL_SECONDS", 3_600));
+  }
+
+  public static String key(String model, int schemaVersion, List<Tweet> tweets) {
+    List<Tweet> sorted = new ArrayList<>(tweets);
+    sorted.sort(Comparator.comparing(Tweet::id, Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder())));
+
+    MessageDigest digest = sha256();
+    update(digest, model);
+    update(digest, Integer.toString(schemaVersion));
+    for (Tweet t : sorted) {
+      update(digest, t.id());
+      update(digest, t.text());
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /** A copy of the cached summary, or null on a miss or expired entry. */
+  public synchronized OpenAIClient.SummaryPayload get(String key) {
+    Entry e = entries.get(key);
+    if (e == null) return null;
+    if (System.currentTimeMillis() > e.expiresAtMillis) {
+      entries.remove(key);
+      return null;
+    }
+    return e.payload.copy();
+  }
+
+  public synchronized void put(String key, OpenAIClient.SummaryPayload payload) {
+    entries.put(key, new Entry(payload.copy(), System.currentTimeMillis() + ttlMillis));
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    if (value != null) {
+      digest.update(value.getBytes(StandardCharsets.UTF_8));
+    }
+    digest.update((byte) 0);
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  private record Entry(OpenAIClient.SummaryPayload payload, long expiresAtMillis) {}
+}
@@ -0,0 +1,44 @@
+package com.tweeterbot;
+
+import java.util.Locale;
+
+/**
+ * Which summarizer produces a result. {@link #LOCAL_FIRST} computes the local summary right away
+ * (streamed as a provisional result over SSE), then asks OpenAI and falls back to the local summary
+ * if that call fails or runs out of time.
+ */
+public enum SummaryEngine {
+  LOCAL("local"),
+  OPENAI("openai"),
+  LOCAL_FIRST("local-first-then-openai");
+
+  private final String id;
+
+  SummaryEngine(String id) {
+    this.id = id;
+  }
+
+  public String id() {
+    return id;
+  }
+
+  /** Parses an engine id; blank means {@code defaultEngine}, anything unknown returns null. */
+  public static SummaryEngine parse(String raw, SummaryEngine defaultEngine) {
+    if (raw == null || raw.isBlank()) {
+      return defaultEngine;
+    }
+    String id = raw.trim().toLowerCase(Locale.ROOT);
+    for (SummaryEngine engine : values()) {
+      if (engine.id.equals(id)) {
+        return engine;
+      }
+    }
+    return null;
+  }
+
+  /** {@code SUMMARY_ENGINE}, defaulting to {@link #OPENAI} when unset or unrecognized. */
+  public static SummaryEngine fromEnv() {
+    SummaryEngine engine = parse(System.getenv("SUMMARY_ENGINE"), OPENAI);
+    return engine != null ? engine : OPENAI;
+  }
+}
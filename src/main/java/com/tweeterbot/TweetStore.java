@@ -0,0 +1,247 @@
+package com.tweeterbot;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, process-wide store of recently fetched tweets, deduplicated by tweet id and indexed by
+ * normalized term. Lets a new topic be answered partly or fully from tweets that were fetched for
+ * other, overlapping topics. Slots are reused in FIFO order once the store is full; postings that
+ * point at evicted tweets are dropped lazily and the index is rebuilt once enough have piled up.
+ */
+public class TweetStore {
+  private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+  private final int capacity;
+  private final long maxAgeSeconds;
+  private final long[] ids;
+  private final CompactTweets.Author[] authors;
+  private final long[] createdAtEpochSeconds;
+  private final byte[][] texts;
+  private final long[] storedAtEpochSeconds;
+  private final Map<Long, Integer> slotById = new HashMap<>();
+  private final Map<String, LongList> postings = new HashMap<>();
+  private int nextSlot;
+  private int size;
+  private int evictedSinceRebuild;
+
+  public TweetStore(int capacity, long maxAgeSeconds) {
+    this.capacity = Math.max(1, capacity);
+    this.maxAgeSeconds = maxAgeSeconds;
+    this.ids = new long[this.capacity];
+    this.authors = new CompactTweets.Author[this.capacity];
+    this.createdAtEpochSeconds = new long[this.capacity];
+    this.texts = new byte[this.capacity][];
+    this.storedAtEpochSeconds = new long[this.capacity];
+  }
+
+  /** Returns null when disabled with {@code TWEET_STORE_MAX_TWEETS=0}. */
+  public static TweetStore fromEnv() {
+    int capacity = Config.envInt("TWEET_STORE_MAX_TWEETS", 20_000);
+    if (capacity <= 0) {
+      return null;
+    }
+    return new TweetStore(capacity, Config.envInt("TWEET_STORE_MAX_AGE_SECONDS", 900));
+  }
+
+  public synchronized void addAll(List<Tweet> tweets) {
+    long now = Instant.now().getEpochSecond();
+    for (Tweet t : tweets) {
+      long id = CompactTweets.parseId(t.id());
+      if (id < 0) continue;
+
+      Integer existing = slotById.get(id);
+      if (existing != null) {
+        storedAtEpochSeconds[existing] = now;
+        continue;
+      }
+
+      int slot = nextSlot;
+      nextSlot = (nextSlot + 1) % capacity;
+      if (size == capacity) {
+        slotById.remove(ids[slot]);
+        evictedSinceRebuild++;
+      } else {
+        size++;
+      }
+
+      ids[slot] = id;
+      authors[slot] = CompactTweets.intern(t.authorId(), t.authorName(), t.authorUsername());
+      createdAtEpochSeconds[slot] = t.createdAt() == null ? NO_TIMESTAMP : t.createdAt().getEpochSecond();
+      texts[slot] = t.text() == null ? new byte[0] : t.text().getBytes(StandardCharsets.UTF_8);
+      storedAtEpochSeconds[slot] = now;
+      slotById.put(id, slot);
+      index(id, t.text());
+    }
+
+    if (evictedSinceRebuild >= capacity) {
+      rebuildIndex();
+    }
+  }
+
+  /**
+   * Fresh tweets containing every term of {@code topic}, newest first and at most {@code limit}.
+   * Returns null when the topic uses search syntax (quotes, operators, exclusions) that this simple
+   * conjunctive term match cannot reproduce faithfully.
+   */
+  public synchronized Match query(String topic, int limit) {
+    List<String> terms = queryTerms(topic);
+    if (terms == null) {
+      return null;
+    }
+
+    long[][] lists = new long[terms.size()][];
+    for (int i = 0; i < terms.size(); i++) {
+      LongList list = postings.get(terms.get(i));
+      if (list == null) {
+        return Match.EMPTY;
+      }
+      lists[i] = list.sortedCopy();
+    }
+    Arrays.sort(lists, (a, b) -> Integer.compare(a.length, b.length));
+
+    long now = Instant.now().getEpochSecond();
+    long[] matches = new long[lists[0].length];
+    int count = 0;
+    long previous = -1;
+    outer:
+    for (long id : lists[0]) {
+      if (id == previous) continue;
+      previous = id;
+      for (int i = 1; i < lists.length; i++) {
+        if (Arrays.binarySearch(lists[i], id) < 0) continue outer;
+      }
+      Integer slot = slotById.get(id);
+      if (slot == null || now - storedAtEpochSeconds[slot] > maxAgeSeconds) continue;
+      matches[count++] = id;
+    }
+
+    if (count == 0) {
+      return Match.EMPTY;
+    }
+
+    // lists[0] is ascending, so the newest tweets are at the end.
+    List<Tweet> tweets = new ArrayList<>(Math.min(limit, count));
+    for (int i = count - 1; i >= 0 && tweets.size() < limit; i--) {
+      tweets.add(toTweet(slotById.get(matches[i])));
+    }
+    return new Match(tweets, matches[count - 1], matches[0]);
+  }
+
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Lower-cased query terms, or null when the topic is not a plain list of words and hashtags. A
+   * hashtag keeps its {@code #}, so like on X it only matches the hashtag, not the bare word.
+   */
+  static List<String> queryTerms(String topic) {
+    List<String> terms = new ArrayList<>();
+    for (String raw : topic.trim().split("\\s+")) {
+      boolean hashtag = raw.startsWith("#");
+      String word = hashtag ? raw.substring(1) : raw;
+      if (word.isEmpty() || "OR".equals(word) || "AND".equals(word)) return null;
+      for (int i = 0; i < word.length(); i++) {
+        char c = word.charAt(i);
+        if (!Character.isLetterOrDigit(c) && c != '_') return null;
+      }
+      if (word.length() < 2) return null;
+      terms.add((hashtag ? "#" : "") + word.toLowerCase(Locale.ROOT));
+    }
+    return terms.isEmpty() ? null : terms;
+  }
+
+  /** Splits text into lower-cased runs of letters, digits and underscores of length two or more. */
+  static void terms(String text, Consumer<String> sink) {
+    if (text == null) return;
+    int start = -1;
+    for (int i = 0; i <= text.length(); i++) {
+      boolean word = i < text.length() && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_');
+      if (word && start < 0) {
+        start = i;
+      } else if (!word && start >= 0) {
+        if (i - start >= 2) {
+          sink.accept(text.substring(start, i).toLowerCase(Locale.ROOT));
+        }
+        start = -1;
+      }
+    }
+  }
+
+  private void index(long id, String text) {
+    Set<String> seen = new HashSet<>();
+    Consumer<String> post = term -> {
+      if (seen.add(term)) {
+        postings.computeIfAbsent(term, k -> new LongList()).add(id);
+      }
+    };
+    terms(text, post);
+    hashtags(text, post);
+  }
+
+  /** Emits {@code #tag} (lower-cased, tag of two or more word characters) for every hashtag in the text. */
+  private static void hashtags(String text, Consumer<String> sink) {
+    for (int i = text.indexOf('#'); i >= 0; i = text.indexOf('#', i + 1)) {
+      int end = i + 1;
+      while (end < text.length() && (Character.isLetterOrDigit(text.charAt(end)) || text.charAt(end) == '_')) {
+        end++;
+      }
+      if (end - i - 1 >= 2) {
+        sink.accept("#" + text.substring(i + 1, end).toLowerCase(Locale.ROOT));
+      }
+    }
+  }
+
+  private void rebuildIndex() {
+    postings.clear();
+    for (Map.Entry<Long, Integer> e : slotById.entrySet()) {
+      int slot = e.getValue();
+      index(e.getKey(), new String(texts[slot], StandardCharsets.UTF_8));
+    }
+    evictedSinceRebuild = 0;
+  }
+
+  private Tweet toTweet(int slot) {
+    CompactTweets.Author a = authors[slot];
+    Instant createdAt = createdAtEpochSeconds[slot] == NO_TIMESTAMP ? null : Instant.ofEpochSecond(createdAtEpochSeconds[slot]);
+    return new Tweet(Long.toString(ids[slot]), a.id(), a.name(), a.username(),
+        new String(texts[slot], StandardCharsets.UTF_8), createdAt);
+  }
+
+  /** Growable array of tweet ids; avoids boxing every posting. */
+  private static final class LongList {
+    private long[] values = new long[4];
+    private int size;
+
+    void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    long[] sortedCopy() {
+      long[] copy = Arrays.copyOf(values, size);
+      Arrays.sort(copy);
+      return copy;
+    }
+  }
+
+  public record Match(List<Tweet> tweets, long newestId, long oldestId) {
+    static final Match EMPTY = new Match(List.of(), -1, -1);
+
+    public boolean isEmpty() {
+      return tweets.isEmpty();
+    }
+  }
+}
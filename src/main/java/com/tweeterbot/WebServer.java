@@ -2,6 +2,8 @@ package com.tweeterbot;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -14,19 +16,45 @@ import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 public class WebServer {
-  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectMapper MAPPER = new ObjectMapper()
+      .registerModule(new JavaTimeModule())
+      .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
   private static final Map<String, CacheEntry> CACHE = new ConcurrentHashMap<>();
+  private static final LoadShedder SHEDDER = LoadShedder.fromEnv();
+  private static final BatchAdmission BATCH_ADMISSION = new BatchAdmission(batchOpenAiSlots(), 8_000);
+  private static PeerCache peers;
+  private static final long HEARTBEAT_SECONDS = 5;
+
+  private static GenerationPipeline pipeline;
+  private static GenerationPipeline batchPipeline;
 
   public static void start() {
     int port = Integer.parseInt(System.getenv().getOrDefault("PORT", "8080"));
 
+    try {
+      peers = PeerCache.fromEnv();
+    } catch (IllegalArgumentException e) {
+      System.err.println("Invalid cluster configuration: " + e.getMessage());
+      System.exit(1);
+    }
+
     try {
       HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
       server.createContext("/", new StaticHandler("/public/index.html", "text/html; charset=utf-8"));
@@ -34,7 +62,11 @@ public class WebServer {
       server.createContext("/app.js", new StaticHandler("/public/app.js", "application/javascript; charset=utf-8"));
       server.createContext("/api/generate", new GenerateHandler(false));
       server.createContext("/api/generate-sse", new GenerateHandler(true));
-      server.setExecutor(null);
+      server.createContext("/api/generate-batch", new BatchHandler());
+      if (peers != null) {
+        server.createContext("/internal/cache", new InternalCacheHandler());
+      }
+      server.setExecutor(Executors.newFixedThreadPool(Config.envInt("SERVER_THREADS", 32)));
       server.start();
 
       System.out.println("TweeterChaatBot web server running on http://localhost:" + port);
@@ -95,34 +127,81 @@ public class WebServer {
         return;
       }
 
-      String topic = sse ? getQueryParam(exchange, "topic") : readTopicFromBody(exchange);
+      Map<String, Object> body = sse ? Map.of() : readJsonBody(exchange);
+      String topic = sse ? getQueryParam(exchange, "topic") : stringField(body, "topic");
       if (topic == null || topic.isBlank()) {
         sendJson(exchange, 400, Map.of("error", "Topic is required"));
         return;
       }
+      SummaryEngine engine = requestEngine(sse ? getQueryParam(exchange, "engine") : stringField(body, "engine"));
+      if (engine == null) {
+        sendJson(exchange, 400, Map.of("error", "Unknown engine"));
+        return;
+      }
+
+      Deadline deadline = requestDeadline(exchange);
+      StageTimings timings = requestTimings(sse ? getQueryParam(exchange, "timings") : stringField(body, "timings"));
+      String normalized = normalizeTopic(topic);
 
       if (sse) {
-        handleSse(exchange, topic);
+        handleSse(exchange, topic, normalized, engine, deadline, timings);
         return;
       }
 
-      String xToken = System.getenv("X_BEARER_TOKEN");
-      String openAiKey = System.getenv("OPENAI_API_KEY");
-      if (xToken == null || xToken.isBlank()) {
-        sendJson(exchange, 400, Map.of("error", "Missing X_BEARER_TOKEN"));
+      String missing = Config.missingCredential(engine);
+      if (missing != null) {
+        sendJson(exchange, 400, Map.of("error", "Missing " + missing));
         return;
       }
-      if (openAiKey == null || openAiKey.isBlank()) {
-        sendJson(exchange, 400, Map.of("error", "Missing OPENAI_API_KEY"));
+
+      // Cached topics are always served; only uncached work goes through admission control.
+      Map<String, Object> cached = cachedPayload(cacheKey(normalized, engine), timings);
+      if (cached != null) {
+        sendJson(exchange, 200, withTimings(cached, timings));
         return;
       }
 
-      Map<String, Object> out = generateNonStreaming(topic);
-      int status = out.containsKey("error") ? 500 : 200;
-      sendJson(exchange, status, out);
+      try (LoadShedder.Permit permit = SHEDDER.admit(deadline)) {
+        if (!permit.admitted()) {
+          sendOverloaded(exchange, permit.retryAfterSeconds());
+          return;
+        }
+
+        int status;
+        Map<String, Object> out;
+        try {
+          out = generateNonStreaming(topic, normalized, engine, deadline, timings);
+          status = 200;
+        } catch (Deadline.ExceededException e) {
+          out = new LinkedHashMap<>(Map.of("error", GenerationPipeline.errorMessage(e)));
+          status = 504;
+        } catch (Exception e) {
+          out = new LinkedHashMap<>(Map.of("error", GenerationPipeline.errorMessage(e)));
+          status = 500;
+        }
+        sendJson(exchange, status, withTimings(out, timings));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
     }
 
-    private void handleSse(HttpExchange exchange, String topic) throws IOException {
+    private void handleSse(HttpExchange exchange, String topic, String normalized, SummaryEngine engine,
+                           Deadline deadline, StageTimings timings) throws IOException {
+      Map<String, Object> cached = cachedPayload(cacheKey(normalized, engine), timings);
+      LoadShedder.Permit permit = null;
+      if (cached == null) {
+        try {
+          permit = SHEDDER.admit(deadline);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        if (!permit.admitted()) {
+          sendOverloaded(exchange, permit.retryAfterSeconds());
+          return;
+        }
+      }
+
       Headers headers = exchange.getResponseHeaders();
       headers.set("Content-Type", "text/event-stream; charset=utf-8");
       headers.set("Cache-Control", "no-cache");
@@ -130,136 +209,464 @@ public class WebServer {
       exchange.sendResponseHeaders(200, 0);
 
       try (OutputStream os = exchange.getResponseBody()) {
-        String xToken = System.getenv("X_BEARER_TOKEN");
-        String openAiKey = System.getenv("OPENAI_API_KEY");
-        if (xToken == null || xToken.isBlank()) {
-          sendEvent(os, "error", "Missing X_BEARER_TOKEN");
+        String missing = Config.missingCredential(engine);
+        if (missing != null) {
+          sendEvent(os, "error", "Missing " + missing);
           return;
         }
-        if (openAiKey == null || openAiKey.isBlank()) {
-          sendEvent(os, "error", "Missing OPENAI_API_KEY");
+
+        if (cached != null) {
+          sendEvent(os, "status", "Loaded from cache.");
+          sendResult(os, cached, timings);
           return;
         }
 
-        String normalized = normalizeTopic(topic);
-        CacheEntry cached = CACHE.get(normalized);
-        if (cached != null && !cached.isExpired()) {
-          sendEvent(os, "status", "Loaded from cache.");
-          Map<String, Object> out = new LinkedHashMap<>(cached.payload);
-          out.put("cache", true);
-          sendEvent(os, "result", MAPPER.writeValueAsString(out));
+        // Stage callbacks arrive on HttpClient threads; only this thread writes to the stream.
+        BlockingQueue<SseUpdate> updates = new LinkedBlockingQueue<>();
+        CompletableFuture<GenerationPipeline.Result> run = pipeline().run(topic, engine, deadline,
+            message -> updates.add(new SseUpdate.Status(message)),
+            provisional -> updates.add(new SseUpdate.Provisional(provisional)),
+            timings);
+        run.whenComplete((r, e) -> updates.add(new SseUpdate.Done()));
+
+        try {
+          SseUpdate update;
+          while (!((update = updates.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS)) instanceof SseUpdate.Done)) {
+            if (update == null) {
+              sendComment(os, "keep-alive");
+            } else if (update instanceof SseUpdate.Provisional p) {
+              sendEvent(os, "provisional", MAPPER.writeValueAsString(buildPayload(topic, p.result())));
+            } else if (update instanceof SseUpdate.Status s) {
+              sendEvent(os, "status", s.message());
+            }
+          }
+        } catch (IOException e) {
+          // The browser went away; stop spending upstream quota on a result nobody will read.
+          run.cancel(true);
           return;
         }
 
-        sendEvent(os, "status", "Fetching recent tweets...");
+        GenerationPipeline.Result result;
+        try {
+          result = run.get();
+        } catch (ExecutionException e) {
+          // Report the failure on the open stream so the page can show why it stopped.
+          if (timings.enabled()) {
+            sendEvent(os, "timing", MAPPER.writeValueAsString(timings.toMap()));
+          }
+          sendEvent(os, "error", GenerationPipeline.errorMessage(e));
+          return;
+        }
+        Map<String, Object> out = buildPayload(topic, result);
+        storeResult(cacheKey(normalized, result.engine()), out);
+        sendResult(os, out, timings);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        if (permit != null) {
+          permit.close();
+        }
+      }
+    }
+  }
 
-        String xBase = System.getenv().getOrDefault("X_API_BASE_URL", "https://api.x.com/2");
-        String oaBase = System.getenv().getOrDefault("OPENAI_API_BASE_URL", "https://api.openai.com/v1");
-        String model = System.getenv().getOrDefault("OPENAI_MODEL", "gpt-4o-mini");
-        String moderationModel = System.getenv().getOrDefault("OPENAI_MODERATION_MODEL", "omni-moderation-latest");
+  /**
+   * Generates many topics in one request. Cache hits are written immediately; misses run concurrently
+   * and each result is streamed back as one NDJSON line as soon as it completes, followed by a final
+   * summary line. Batches use their own upstream limiters, so they never sit in front of interactive
+   * requests, and are admitted only if those limiters can finish their misses before the deadline.
+   */
+  private static class BatchHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+        send(exchange, 405, "Method Not Allowed");
+        return;
+      }
 
-        XClient xClient = new XClient(System.getenv("X_BEARER_TOKEN"), xBase);
-        List<Tweet> tweets = xClient.fetchRecentUniqueAuthors(topic, 50);
+      Map<String, Object> body = readJsonBody(exchange);
+      List<String> topics = topicsField(body);
+      if (topics.isEmpty()) {
+        sendJson(exchange, 400, Map.of("error", "Topics are required"));
+        return;
+      }
+      SummaryEngine engine = requestEngine(stringField(body, "engine"));
+      if (engine == null) {
+        sendJson(exchange, 400, Map.of("error", "Unknown engine"));
+        return;
+      }
+      int maxTopics = Config.envInt("MAX_BATCH_TOPICS", 100);
+      if (topics.size() > maxTopics) {
+        sendJson(exchange, 400, Map.of("error", "At most " + maxTopics + " topics per batch"));
+        return;
+      }
 
-        sendEvent(os, "status", "Summarizing with OpenAI...");
-        OpenAIClient ai = new OpenAIClient(System.getenv("OPENAI_API_KEY"), oaBase, model);
-        OpenAIClient.SummaryPayload summary = ai.summarize(topic, tweets);
+      String missing = Config.missingCredential(engine);
+      if (missing != null) {
+        sendJson(exchange, 400, Map.of("error", "Missing " + missing));
+        return;
+      }
+
+      long started = System.nanoTime();
+      List<Map<String, Object>> hits = new ArrayList<>();
+      Map<String, String> misses = new LinkedHashMap<>();
+      Set<String> seen = new HashSet<>();
+      for (String topic : topics) {
+        String key = cacheKey(normalizeTopic(topic), engine);
+        if (!seen.add(key)) {
+          continue;
+        }
+        Map<String, Object> cached = localCachedPayload(key);
+        if (cached != null) {
+          hits.add(cached);
+        } else {
+          misses.put(key, topic);
+        }
+      }
+
+      // Ask owner nodes about every local miss at once rather than one round trip per topic.
+      Map<String, CompletableFuture<Map<String, Object>>> fromPeers = new LinkedHashMap<>();
+      for (String key : misses.keySet()) {
+        fromPeers.put(key, peerCachedPayloadAsync(key));
+      }
+      fromPeers.forEach((key, future) -> {
+        Map<String, Object> cached = future.join();
+        if (cached != null) {
+          hits.add(cached);
+          misses.remove(key);
+        }
+      });
+
+      Deadline deadline = batchDeadline(exchange);
+      BatchAdmission.Permit permit = null;
+      if (!misses.isEmpty()) {
+        permit = BATCH_ADMISSION.admit(deadline, misses.size());
+        if (!permit.admitted()) {
+          sendOverloaded(exchange, permit.retryAfterSeconds());
+          return;
+        }
+      }
+
+      exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+      exchange.sendResponseHeaders(200, 0);
+
+      BlockingQueue<Map<String, Object>> completed = new LinkedBlockingQueue<>();
+      List<CompletableFuture<GenerationPipeline.Result>> runs = new ArrayList<>();
+      try (OutputStream os = exchange.getResponseBody()) {
+        for (Map<String, Object> hit : hits) {
+          writeLine(os, hit);
+        }
 
-        sendEvent(os, "status", "Running moderation...");
-        OpenAIModerationClient moderation = new OpenAIModerationClient(System.getenv("OPENAI_API_KEY"), oaBase, moderationModel);
-        OpenAIModerationClient.ModerationResult mod = moderation.moderate(summary.suggestedPost);
-        if (mod.flagged()) {
-          summary.suggestedPost = "Suggested post withheld due to safety policies.";
+        for (String topic : misses.values()) {
+          String normalized = normalizeTopic(topic);
+          CompletableFuture<GenerationPipeline.Result> run =
+              batchPipeline().run(topic, engine, deadline, status -> {}, provisional -> {}, StageTimings.OFF);
+          runs.add(run);
+          run.whenComplete((result, error) -> {
+            if (error != null) {
+              Map<String, Object> failed = new LinkedHashMap<>();
+              failed.put("topic", topic);
+              failed.put("error", GenerationPipeline.errorMessage(error));
+              completed.add(failed);
+              return;
+            }
+            Map<String, Object> out = buildPayload(topic, result);
+            storeResult(cacheKey(normalized, result.engine()), out);
+            completed.add(out);
+          });
         }
 
-        Map<String, Object> out = new LinkedHashMap<>();
-        out.put("topic", topic);
-        out.put("generated_at", Instant.now().toString());
-        out.put("model", model);
-        out.put("tweets", tweets);
-        out.put("summary", summary);
-        out.put("moderation", mod);
-        out.put("cache", false);
-
-        CACHE.put(normalized, new CacheEntry(out, ttlSeconds()));
-        sendEvent(os, "result", MAPPER.writeValueAsString(out));
-      } catch (Exception e) {
-        sendEvent(exchange.getResponseBody(), "error", e.getMessage());
+        int errors = 0;
+        for (int i = 0; i < runs.size(); i++) {
+          Map<String, Object> line = completed.take();
+          if (line.containsKey("error")) errors++;
+          writeLine(os, line);
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("batch_complete", true);
+        summary.put("topics", hits.size() + misses.size());
+        summary.put("cached", hits.size());
+        summary.put("generated", misses.size() - errors);
+        summary.put("errors", errors);
+        summary.put("elapsed_ms", (System.nanoTime() - started) / 1_000_000);
+        writeLine(os, summary);
+        if (permit != null) {
+          permit.completed();
+        }
+      } catch (IOException e) {
+        // Client disconnected; abandon whatever is still queued or in flight.
+        runs.forEach(run -> run.cancel(true));
+      } catch (InterruptedException e) {
+        runs.forEach(run -> run.cancel(true));
+        Thread.currentThread().interrupt();
+      } finally {
+        if (permit != null) {
+          permit.close();
+        }
       }
     }
+
+    private void writeLine(OutputStream os, Map<String, Object> line) throws IOException {
+      os.write(MAPPER.writeValueAsBytes(line));
+      os.write('\n');
+      os.flush();
+    }
   }
 
-  private static Map<String, Object> generateNonStreaming(String topic) {
-    String normalized = normalizeTopic(topic);
-    CacheEntry cached = CACHE.get(normalized);
-    if (cached != null && !cached.isExpired()) {
-      Map<String, Object> out = new LinkedHashMap<>(cached.payload);
-      out.put("cache", true);
+  /**
+   * Cluster-internal endpoint: {@code GET} returns this node's entry for a cache key with its
+   * remaining TTL, {@code PUT} stores an entry generated by a peer.
+   */
+  private static class InternalCacheHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      if (!peers.authorized(exchange.getRequestHeaders().getFirst(PeerCache.SECRET_HEADER))) {
+        send(exchange, 403, "Forbidden");
+        return;
+      }
+
+      // Already a cache key (normalized, possibly engine-prefixed); used exactly as the peer sent it.
+      String key = getQueryParam(exchange, "topic");
+      if (key.isBlank()) {
+        send(exchange, 400, "Topic is required");
+        return;
+      }
+
+      if ("GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+        CacheEntry cached = CACHE.get(key);
+        if (cached == null || cached.isExpired()) {
+          send(exchange, 404, "Not Found");
+          return;
+        }
+        byte[] body = peers.writeEntry(cached.payload(), cached.remainingSeconds());
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+          os.write(body);
+        }
+        return;
+      }
+
+      if ("PUT".equalsIgnoreCase(exchange.getRequestMethod())) {
+        String body = new String(readAllBytes(exchange.getRequestBody()), StandardCharsets.UTF_8);
+        PeerCache.Entry entry = peers.readEntry(body);
+        if (entry.ttlSeconds() > 0) {
+          CACHE.put(key, new CacheEntry(entry.payload(), (int) entry.ttlSeconds()));
+        }
+        exchange.sendResponseHeaders(204, -1);
+        exchange.close();
+        return;
+      }
+
+      send(exchange, 405, "Method Not Allowed");
+    }
+  }
+
+  private static Map<String, Object> generateNonStreaming(String topic, String normalized, SummaryEngine engine,
+                                                         Deadline deadline, StageTimings timings) throws Exception {
+    try {
+      GenerationPipeline.Result result =
+          pipeline().run(topic, engine, deadline, status -> {}, provisional -> {}, timings).get();
+      Map<String, Object> out = buildPayload(topic, result);
+      storeResult(cacheKey(normalized, result.engine()), out);
       return out;
+    } catch (ExecutionException e) {
+      Throwable cause = GenerationPipeline.unwrap(e);
+      throw cause instanceof Exception ex ? ex : e;
+    }
+  }
+
+  /**
+   * Cache key for a topic summarized by {@code engine}. OpenAI results keep the bare normalized topic,
+   * which local-first requests also look up, so a cached local fallback is never served in place of
+   * a fresh OpenAI attempt.
+   */
+  private static String cacheKey(String normalized, SummaryEngine engine) {
+    return engine == SummaryEngine.LOCAL ? "local\u0000" + normalized : normalized;
+  }
+
+  /** Local cache first, then (in cluster mode) the topic's owner node. */
+  private static Map<String, Object> cachedPayload(String key, StageTimings timings) {
+    StageEvents.CacheLookup event = new StageEvents.CacheLookup();
+    event.begin();
+    long mark = timings.mark();
+    Map<String, Object> found = localCachedPayload(key);
+    if (found == null) {
+      found = peerCachedPayloadAsync(key).join();
     }
+    timings.add("cache_lookup", mark);
+    event.cache = "topic";
+    event.hit = found != null;
+    event.commit();
+    return found;
+  }
 
-    String xBase = System.getenv().getOrDefault("X_API_BASE_URL", "https://api.x.com/2");
-    String oaBase = System.getenv().getOrDefault("OPENAI_API_BASE_URL", "https://api.openai.com/v1");
-    String model = System.getenv().getOrDefault("OPENAI_MODEL", "gpt-4o-mini");
-    String moderationModel = System.getenv().getOrDefault("OPENAI_MODERATION_MODEL", "omni-moderation-latest");
+  private static Map<String, Object> localCachedPayload(String key) {
+    CacheEntry cached = CACHE.get(key);
+    if (cached == null || cached.isExpired()) {
+      return null;
+    }
+    Map<String, Object> out = cached.payload();
+    out.put("cache", true);
+    return out;
+  }
 
-    try {
-      XClient xClient = new XClient(System.getenv("X_BEARER_TOKEN"), xBase);
-      List<Tweet> tweets = xClient.fetchRecentUniqueAuthors(topic, 50);
+  /** Completes with the owner's entry (also kept locally for its remaining TTL), or null. */
+  private static CompletableFuture<Map<String, Object>> peerCachedPayloadAsync(String key) {
+    if (peers == null) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return peers.fetchAsync(key).thenApply(entry -> {
+      if (entry == null || entry.ttlSeconds() <= 0) {
+        return null;
+      }
+      CACHE.put(key, new CacheEntry(entry.payload(), (int) entry.ttlSeconds()));
+      return localCachedPayload(key);
+    });
+  }
 
-      OpenAIClient ai = new OpenAIClient(System.getenv("OPENAI_API_KEY"), oaBase, model);
-      OpenAIClient.SummaryPayload summary = ai.summarize(topic, tweets);
+  private static void storeResult(String key, Map<String, Object> out) {
+    CACHE.put(key, new CacheEntry(out, ttlSeconds()));
+    if (peers != null) {
+      peers.fill(key, out, ttlSeconds());
+    }
+  }
+
+  /**
+   * Budget for this request: the client's {@code X-Request-Deadline-Ms} header (milliseconds from now)
+   * when present, otherwise {@code REQUEST_DEADLINE_MS}. A client may shorten its budget but never
+   * extend it past {@code REQUEST_DEADLINE_MS}.
+   */
+  private static Deadline requestDeadline(HttpExchange exchange) {
+    return clientDeadline(exchange, Config.envInt("REQUEST_DEADLINE_MS", 45_000));
+  }
 
-      OpenAIModerationClient moderation = new OpenAIModerationClient(System.getenv("OPENAI_API_KEY"), oaBase, moderationModel);
-      OpenAIModerationClient.ModerationResult mod = moderation.moderate(summary.suggestedPost);
+  private static Deadline batchDeadline(HttpExchange exchange) {
+    return clientDeadline(exchange, Config.envInt("BATCH_DEADLINE_MS", 120_000));
+  }
 
-      if (mod.flagged()) {
-        summary.suggestedPost = "Suggested post withheld due to safety policies.";
+  private static Deadline clientDeadline(HttpExchange exchange, long maxMillis) {
+    long budget = maxMillis;
+    String header = exchange.getRequestHeaders().getFirst("X-Request-Deadline-Ms");
+    if (header != null && !header.isBlank()) {
+      try {
+        budget = Math.max(0, Math.min(Long.parseLong(header.trim()), maxMillis));
+      } catch (NumberFormatException ignored) {
+        // fall back to the default budget
       }
+    }
+    return Deadline.after(Duration.ofMillis(budget));
+  }
 
-      Map<String, Object> out = new LinkedHashMap<>();
-      out.put("topic", topic);
-      out.put("generated_at", Instant.now().toString());
-      out.put("model", model);
-      out.put("tweets", tweets);
-      out.put("summary", summary);
-      out.put("moderation", mod);
-      out.put("cache", false);
-
-      CACHE.put(normalized, new CacheEntry(out, ttlSeconds()));
-      return out;
-    } catch (Exception e) {
-      return Map.of("error", e.getMessage());
+  private static void sendOverloaded(HttpExchange exchange, long retryAfterSeconds) throws IOException {
+    exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+    sendJson(exchange, 503, Map.of("error", "Server is busy, retry later"));
+  }
+
+  private static Map<String, Object> buildPayload(String topic, GenerationPipeline.Result result) {
+    Map<String, Object> out = new LinkedHashMap<>();
+    out.put("topic", topic);
+    out.put("generated_at", Instant.now().toString());
+    out.put("model", result.engine() == SummaryEngine.LOCAL ? "local" : pipeline().model());
+    out.put("engine", result.engine().id());
+    out.put("tweets", result.tweets());
+    out.put("summary", result.summary());
+    out.put("moderation", result.moderation());
+    out.put("cache", false);
+    return out;
+  }
+
+  private static synchronized GenerationPipeline pipeline() {
+    if (pipeline == null) {
+      pipeline = GenerationPipeline.fromEnv();
     }
+    return pipeline;
   }
 
-  private static int ttlSeconds() {
-    String raw = System.getenv().getOrDefault("CACHE_TTL_SECONDS", "600");
-    try {
-      return Integer.parseInt(raw);
-    } catch (NumberFormatException e) {
-      return 600;
+  private static synchronized GenerationPipeline batchPipeline() {
+    if (batchPipeline == null) {
+      batchPipeline = pipeline().withLimiters(
+          new ConcurrencyLimiter(Config.envInt("BATCH_X_MAX_CONCURRENCY", Config.envInt("X_MAX_CONCURRENCY", 4))),
+          new ConcurrencyLimiter(batchOpenAiSlots()));
     }
+    return batchPipeline;
+  }
+
+  /** OpenAI slots for batch topics; {@link #BATCH_ADMISSION} counts its rounds in these. */
+  private static int batchOpenAiSlots() {
+    return Config.envInt("BATCH_OPENAI_MAX_CONCURRENCY", Config.envInt("OPENAI_MAX_CONCURRENCY", 8));
+  }
+
+  private static int ttlSeconds() {
+    return Config.envInt("CACHE_TTL_SECONDS", 600);
   }
 
   private static String normalizeTopic(String topic) {
     return topic.trim().toLowerCase();
   }
 
-  private static String readTopicFromBody(HttpExchange exchange) throws IOException {
+  /**
+   * Per-request stage timings, collected when the request asks for them ({@code "timings": true} in
+   * the body or {@code &timings=true} on the SSE URL) or {@code STAGE_TIMINGS=true} turns them on for all.
+   */
+  private static StageTimings requestTimings(String requested) {
+    boolean enabled = "true".equalsIgnoreCase(requested) || "1".equals(requested)
+        || "true".equalsIgnoreCase(System.getenv("STAGE_TIMINGS"));
+    return enabled ? StageTimings.start() : StageTimings.OFF;
+  }
+
+  private static Map<String, Object> withTimings(Map<String, Object> out, StageTimings timings) {
+    if (timings.enabled()) {
+      out.put("timings", timings.toMap());
+    }
+    return out;
+  }
+
+  /** The requested engine, the server default when none was given, or null when it is unknown. */
+  private static SummaryEngine requestEngine(String raw) {
+    return SummaryEngine.parse(raw, pipeline().defaultEngine());
+  }
+
+  private static Map<String, Object> readJsonBody(HttpExchange exchange) throws IOException {
     String body = new String(readAllBytes(exchange.getRequestBody()), StandardCharsets.UTF_8);
-    Map<String, Object> payload = MAPPER.readValue(body, new TypeReference<>() {});
-    return String.valueOf(payload.getOrDefault("topic", "")).trim();
+    return MAPPER.readValue(body, new TypeReference<>() {});
+  }
+
+  private static String stringField(Map<String, Object> payload, String key) {
+    return String.valueOf(payload.getOrDefault(key, "")).trim();
+  }
+
+  private static List<String> topicsField(Map<String, Object> payload) {
+    Object raw = payload.get("topics");
+    List<String> topics = new ArrayList<>();
+    if (raw instanceof List<?> list) {
+      for (Object item : list) {
+        String topic = item == null ? "" : String.valueOf(item).trim();
+        if (!topic.isBlank()) {
+          topics.add(topic);
+        }
+      }
+    }
+    return topics;
   }
 
   private static String getQueryParam(HttpExchange exchange, String key) {
-    String query = exchange.getRequestURI().getQuery();
-    if (query == null || query.isBlank()) return "";
+    return queryParam(exchange.getRequestURI().getRawQuery(), key);
+  }
+
+  /**
+   * Value of {@code key} in a still-encoded query string, decoded exactly once, or "" when absent.
+   * Splitting must happen before decoding, or an encoded {@code &} or {@code =} in a value would
+   * end it early.
+   */
+  static String queryParam(String rawQuery, String key) {
+    if (rawQuery == null || rawQuery.isBlank()) return "";
 
-    String[] pairs = query.split("&");
+    String[] pairs = rawQuery.split("&");
     for (String pair : pairs) {
       String[] kv = pair.split("=", 2);
-      if (kv.length == 2 && kv[0].equals(key)) {
+      if (kv.length == 2 && URLDecoder.decode(kv[0], StandardCharsets.UTF_8).equals(key)) {
         return URLDecoder.decode(kv[1], StandardCharsets.UTF_8);
       }
     }
@@ -272,6 +679,32 @@ public class WebServer {
     os.flush();
   }
 
+  /** Sends the {@code timing} event (when enabled) and then the {@code result} event. */
+  private static void sendResult(OutputStream os, Map<String, Object> out, StageTimings timings) throws IOException {
+    String json = serialize(out, "sse.result", timings);
+    if (timings.enabled()) {
+      sendEvent(os, "timing", MAPPER.writeValueAsString(timings.toMap()));
+    }
+    sendEvent(os, "result", json);
+  }
+
+  private static String serialize(Object payload, String target, StageTimings timings) throws IOException {
+    StageEvents.Serialization event = new StageEvents.Serialization();
+    event.begin();
+    long mark = timings.mark();
+    String json = MAPPER.writeValueAsString(payload);
+    timings.add("serialization", mark);
+    event.target = target;
+    event.bytes = json.length();
+    event.commit();
+    return json;
+  }
+
+  private static void sendComment(OutputStream os, String comment) throws IOException {
+    os.write((": " + comment + "\n\n").getBytes(StandardCharsets.UTF_8));
+    os.flush();
+  }
+
   private static byte[] readAllBytes(InputStream in) throws IOException {
     ByteArrayOutputStream buffer = new ByteArrayOutputStream();
     byte[] data = new byte[4096];
@@ -292,7 +725,12 @@ public class WebServer {
   }
 
   private static void sendJson(HttpExchange exchange, int status, Object payload) throws IOException {
+    StageEvents.Serialization event = new StageEvents.Serialization();
+    event.begin();
     byte[] bytes = MAPPER.writeValueAsBytes(payload);
+    event.target = "http.response";
+    event.bytes = bytes.length;
+    event.commit();
     exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
     exchange.sendResponseHeaders(status, bytes.length);
     try (OutputStream os = exchange.getResponseBody()) {
@@ -300,15 +738,49 @@ public class WebServer {
     }
   }
 
+  /** What a running generation hands the SSE writer thread. */
+  private sealed interface SseUpdate {
+    record Status(String message) implements SseUpdate {}
+
+    /** Local summary streamed by the local-first engine before OpenAI answers. */
+    record Provisional(GenerationPipeline.Result result) implements SseUpdate {}
+
+    /** The pipeline future has completed; the writer reads the outcome from it. */
+    record Done() implements SseUpdate {}
+  }
+
   private static class CacheEntry {
-    final Map<String, Object> payload;
+    private final Map<String, Object> payload;
     final long expiresAtEpochSeconds;
 
     CacheEntry(Map<String, Object> payload, int ttlSeconds) {
-      this.payload = payload;
+      this.payload = compact(payload);
       this.expiresAtEpochSeconds = Instant.now().getEpochSecond() + Math.max(1, ttlSeconds);
     }
 
+    /** A fresh copy of the cached payload with tweets expanded back into {@link Tweet} records. */
+    Map<String, Object> payload() {
+      Map<String, Object> out = new LinkedHashMap<>();
+      payload.forEach((key, value) -> out.put(key, value instanceof CompactTweets c ? c.toTweets() : value));
+      return out;
+    }
+
+    private static Map<String, Object> compact(Map<String, Object> payload) {
+      Map<String, Object> out = new LinkedHashMap<>();
+      payload.forEach((key, value) -> {
+        if ("tweets".equals(key) && value instanceof List<?> list) {
+          out.put(key, CompactTweets.of(list.stream().map(Tweet.class::cast).toList()));
+        } else {
+          out.put(key, value);
+        }
+      });
+      return out;
+    }
+
+    long remainingSeconds() {
+      return Math.max(0, expiresAtEpochSeconds - Instant.now().getEpochSecond());
+    }
+
     boolean isExpired() {
       return Instant.now().getEpochSecond() > expiresAtEpochSeconds;
     }
@@ -16,64 +16,190 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public class XClient {
+  private static final int MAX_PAGES = 5;
+  private static final int LOCAL_CANDIDATES_PER_SLOT = 4;
+
   private final String bearerToken;
   private final String baseUrl;
+  private final TweetStore store;
   private final HttpClient http;
   private final ObjectMapper mapper;
 
   public XClient(String bearerToken, String baseUrl) {
+    this(bearerToken, baseUrl, null);
+  }
+
+  /**
+   * @param store optional shared tweet store; every fetched page is added to it, and topics it can
+   *              answer are served from it with X queried only for the missing range
+   */
+  public XClient(String bearerToken, String baseUrl, TweetStore store) {
     this.bearerToken = bearerToken;
     this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    this.store = store;
     this.http = HttpClient.newHttpClient();
     this.mapper = new ObjectMapper();
   }
 
   public List<Tweet> fetchRecentUniqueAuthors(String topic, int targetCount) throws IOException, InterruptedException {
-    if (targetCount <= 0) {
-      return List.of();
+    CompletableFuture<List<Tweet>> fetch = fetchRecentUniqueAuthorsAsync(topic, targetCount);
+    try {
+      return fetch.get();
+    } catch (InterruptedException e) {
+      fetch.cancel(true); // stop paging once nobody is waiting for the result
+      throw e;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException io) throw io;
+      throw new IOException(cause);
     }
+  }
 
-    String nextToken = null;
-    Map<String, Tweet> byAuthor = new LinkedHashMap<>();
-    int safetyPages = 5; // avoid endless loops if topic is too narrow
+  /**
+   * Non-blocking variant of {@link #fetchRecentUniqueAuthors}. Pages are requested one after another
+   * with {@code sendAsync}; cancelling (or timing out) the returned future aborts the page in flight
+   * and stops any further pages from being requested.
+   *
+   * <p>When the tweet store already holds matching tweets, X is asked only for tweets newer than the
+   * newest local match ({@code since_id}) and, if that is still not enough, older than the oldest one
+   * ({@code until_id}). Enough local matches skip X entirely.
+   */
+  public CompletableFuture<List<Tweet>> fetchRecentUniqueAuthorsAsync(String topic, int targetCount) {
+    return fetchRecentUniqueAuthorsAsync(topic, targetCount, StageTimings.OFF);
+  }
 
-    while (byAuthor.size() < targetCount && safetyPages-- > 0) {
-      String url = buildSearchUrl(topic, nextToken);
-      HttpRequest req = HttpRequest.newBuilder(URI.create(url))
-          .header("Authorization", "Bearer " + bearerToken)
-          .header("User-Agent", "TweeterChaatBot/1.0")
-          .GET()
-          .build();
+  /** As above, recording the store lookup, each page and each parse into {@code timings}. */
+  public CompletableFuture<List<Tweet>> fetchRecentUniqueAuthorsAsync(String topic, int targetCount,
+                                                                      StageTimings timings) {
+    CompletableFuture<List<Tweet>> result = new CompletableFuture<>();
+    if (targetCount <= 0) {
+      result.complete(List.of());
+      return result;
+    }
 
-      HttpResponse<String> resp = http.send(req, HttpResponse.BodyHandlers.ofString());
-      if (resp.statusCode() != 200) {
-        throw new IOException("X API error: HTTP " + resp.statusCode() + " -> " + resp.body());
-      }
+    TweetStore.Match local = null;
+    if (store != null) {
+      StageEvents.CacheLookup lookup = new StageEvents.CacheLookup();
+      lookup.begin();
+      long mark = timings.mark();
+      local = store.query(topic, targetCount * LOCAL_CANDIDATES_PER_SLOT);
+      timings.add("cache_lookup", mark);
+      lookup.cache = "tweet_store";
+      lookup.hit = local != null && !local.isEmpty();
+      lookup.commit();
+    }
+    Fetch fetch = new Fetch(topic, targetCount, local, result, timings);
+    if (local == null || local.isEmpty()) {
+      fetchPageAsync(fetch, Range.ALL, null);
+    } else if (fetch.selected().size() >= targetCount) {
+      result.complete(fetch.selected());
+    } else {
+      fetchPageAsync(fetch, Range.NEWER, null);
+    }
+    return result;
+  }
 
-      JsonNode root = mapper.readTree(resp.body());
-      Map<String, User> users = parseUsers(root.path("includes").path("users"));
-      List<Tweet> tweets = parseTweets(root.path("data"), users);
+  private void fetchPageAsync(Fetch fetch, Range range, String nextToken) {
+    CompletableFuture<List<Tweet>> result = fetch.result;
+    if (result.isDone()) {
+      return; // cancelled or timed out by the caller
+    }
 
-      for (Tweet t : tweets) {
-        byAuthor.putIfAbsent(t.authorId(), t);
-        if (byAuthor.size() >= targetCount) {
-          break;
+    fetch.pagesLeft--;
+    int pageNumber = ++fetch.pagesFetched;
+    StageEvents.XPageFetch event = new StageEvents.XPageFetch();
+    event.begin();
+    long mark = fetch.timings.mark();
+    HttpRequest req = buildSearchRequest(fetch.topic, nextToken,
+        range == Range.NEWER ? fetch.local.newestId() : -1,
+        range == Range.OLDER ? fetch.local.oldestId() : -1);
+    CompletableFuture<HttpResponse<String>> page = http.sendAsync(req, HttpResponse.BodyHandlers.ofString());
+    result.whenComplete((r, e) -> page.cancel(true));
+
+    page.whenComplete((resp, error) -> {
+      if (error != null) {
+        // No response at all (connect failure, timeout, cancellation): still account for the page.
+        recordPage(fetch, event, pageNumber, range, 0, 0, mark, GenerationPipeline.errorMessage(error));
+        result.completeExceptionally(error);
+        return;
+      }
+      try {
+        List<Tweet> into = range == Range.OLDER ? fetch.older : fetch.newer;
+        int before = into.size();
+        String next;
+        try {
+          next = collectPage(resp, into, fetch.timings);
+        } finally {
+          recordPage(fetch, event, pageNumber, range, resp.statusCode(), into.size() - before, mark, null);
+        }
+        List<Tweet> selected = fetch.selected();
+        if (selected.size() >= fetch.targetCount || fetch.pagesLeft <= 0) {
+          result.complete(selected);
+        } else if (next != null) {
+          fetchPageAsync(fetch, range, next);
+        } else if (range == Range.NEWER) {
+          fetchPageAsync(fetch, Range.OLDER, null);
+        } else {
+          result.complete(selected);
         }
+      } catch (IOException | RuntimeException e) {
+        result.completeExceptionally(e);
       }
+    });
+  }
 
-      JsonNode meta = root.path("meta");
-      nextToken = meta.has("next_token") ? meta.get("next_token").asText() : null;
-      if (nextToken == null || nextToken.isBlank()) {
-        break;
-      }
+  private static void recordPage(Fetch fetch, StageEvents.XPageFetch event, int pageNumber, Range range,
+                                 int status, int tweetCount, long mark, String error) {
+    fetch.timings.page(pageNumber, range.label, tweetCount, mark, error);
+    event.topic = fetch.topic;
+    event.page = pageNumber;
+    event.range = range.label;
+    event.status = status;
+    event.tweetCount = tweetCount;
+    event.error = error;
+    event.commit();
+  }
+
+  private HttpRequest buildSearchRequest(String topic, String nextToken, long sinceId, long untilId) {
+    return HttpRequest.newBuilder(URI.create(buildSearchUrl(topic, nextToken, sinceId, untilId)))
+        .header("Authorization", "Bearer " + bearerToken)
+        .header("User-Agent", "TweeterChaatBot/1.0")
+        .GET()
+        .build();
+  }
+
+  /** Appends the page's tweets to {@code into} and returns the next pagination token, or null when done. */
+  private String collectPage(HttpResponse<String> resp, List<Tweet> into, StageTimings timings) throws IOException {
+    if (resp.statusCode() != 200) {
+      throw new IOException("X API error: HTTP " + resp.statusCode() + " -> " + resp.body());
     }
 
-    return new ArrayList<>(byAuthor.values());
+    StageEvents.JsonParse parse = new StageEvents.JsonParse();
+    parse.begin();
+    long mark = timings.mark();
+    JsonNode root = mapper.readTree(resp.body());
+    Map<String, User> users = parseUsers(root.path("includes").path("users"));
+    List<Tweet> tweets = parseTweets(root.path("data"), users);
+    timings.add("json_parse", mark);
+    parse.source = "x.search";
+    parse.bytes = resp.body().length();
+    parse.commit();
+    if (store != null) {
+      store.addAll(tweets);
+    }
+
+    into.addAll(tweets);
+
+    JsonNode meta = root.path("meta");
+    String nextToken = meta.has("next_token") ? meta.get("next_token").asText() : null;
+    return nextToken == null || nextToken.isBlank() ? null : nextToken;
   }
 
-  private String buildSearchUrl(String topic, String nextToken) {
+  private String buildSearchUrl(String topic, String nextToken, long sinceId, long untilId) {
     String query = topic + " -is:retweet";
 
     Map<String, String> params = new HashMap<>();
@@ -85,6 +211,12 @@ public class XClient {
     if (nextToken != null && !nextToken.isBlank()) {
       params.put("next_token", nextToken);
     }
+    if (sinceId > 0) {
+      params.put("since_id", Long.toString(sinceId));
+    }
+    if (untilId > 0) {
+      params.put("until_id", Long.toString(untilId));
+    }
 
     StringBuilder sb = new StringBuilder();
     sb.append(baseUrl).append("/tweets/search/recent?");
@@ -140,6 +272,65 @@ public class XClient {
     return map;
   }
 
+  private enum Range {
+    ALL("all"), NEWER("newer"), OLDER("older");
+
+    final String label;
+
+    Range(String label) {
+      this.label = label;
+    }
+  }
+
+  /** State shared by the pages of one fetch. */
+  private static final class Fetch {
+    final String topic;
+    final int targetCount;
+    final TweetStore.Match local;
+    final CompletableFuture<List<Tweet>> result;
+    final List<Tweet> newer = new ArrayList<>();
+    final List<Tweet> older = new ArrayList<>();
+    final Map<String, int[]> fingerprints = new HashMap<>();
+    final StageTimings timings;
+    int pagesLeft = MAX_PAGES; // avoid endless loops if topic is too narrow
+    int pagesFetched;
+
+    Fetch(String topic, int targetCount, TweetStore.Match local, CompletableFuture<List<Tweet>> result,
+          StageTimings timings) {
+      this.topic = topic;
+      this.targetCount = targetCount;
+      this.local = local;
+      this.result = result;
+      this.timings = timings;
+    }
+
+    /**
+     * Newest-first tweets from unique authors: fetched newer ones, then local matches, then older ones.
+     * Near-duplicate texts are skipped, so their authors' slots go to the next distinct voice.
+     */
+    List<Tweet> selected() {
+      Map<String, Tweet> byAuthor = new LinkedHashMap<>();
+      NearDuplicateFilter duplicates = new NearDuplicateFilter();
+      add(byAuthor, duplicates, newer);
+      if (local != null) {
+        add(byAuthor, duplicates, local.tweets());
+      }
+      add(byAuthor, duplicates, older);
+      return new ArrayList<>(byAuthor.values());
+    }
+
+    private void add(Map<String, Tweet> byAuthor, NearDuplicateFilter duplicates, List<Tweet> tweets) {
+      for (Tweet t : tweets) {
+        if (byAuthor.size() >= targetCount) return;
+        if (byAuthor.containsKey(t.authorId())) continue;
+        int[] fingerprint = fingerprints.computeIfAbsent(t.id(), id -> NearDuplicateFilter.fingerprint(t.text()));
+        if (duplicates.add(fingerprint)) {
+          byAuthor.put(t.authorId(), t);
+        }
+      }
+    }
+  }
+
   private static class User {
     final String id;
     final String name;
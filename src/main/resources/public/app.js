@@ -117,6 +117,11 @@ async function generate() {
     setStatus(evt.data || "Working...");
   });
 
+  es.addEventListener("provisional", (evt) => {
+    render(JSON.parse(evt.data));
+    setStatus("Showing a quick local summary while OpenAI works...");
+  });
+
   es.addEventListener("result", (evt) => {
     const data = JSON.parse(evt.data);
     render(data);
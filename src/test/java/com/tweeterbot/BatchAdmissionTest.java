@@ -0,0 +1,40 @@
+package com.tweeterbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+class BatchAdmissionTest {
+
+  @Test
+  void admitsWhatTheSlotsCanFinishBeforeTheDeadline() {
+    // 8 slots at 1s per round: 40 topics take 5 rounds.
+    BatchAdmission admission = new BatchAdmission(8, 1_000);
+    Deadline deadline = Deadline.after(Duration.ofSeconds(10));
+
+    BatchAdmission.Permit first = admission.admit(deadline, 40);
+    assertTrue(first.admitted());
+
+    BatchAdmission.Permit second = admission.admit(deadline, 40);
+    assertFalse(second.admitted(), "80 topics need 10 rounds, past the deadline");
+    assertEquals(5, second.retryAfterSeconds(), "the first batch should drain in about 5 rounds");
+    second.close();
+
+    assertTrue(admission.admit(deadline, 8).admitted(), "one more round still fits");
+
+    first.close();
+    assertTrue(admission.admit(deadline, 40).admitted());
+  }
+
+  @Test
+  void rejectsABatchTheSlotsCannotFinishAlone() {
+    BatchAdmission admission = new BatchAdmission(4, 2_000);
+
+    assertFalse(admission.admit(Deadline.after(Duration.ofSeconds(10)), 40).admitted());
+    assertTrue(admission.admit(Deadline.after(Duration.ofSeconds(10)), 16).admitted());
+  }
+}
@@ -0,0 +1,67 @@
+package com.tweeterbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class CompactTweetsTest {
+
+  private static Tweet tweet(String id, String text, Instant createdAt) {
+    return new Tweet(id, "42", "Ada", "ada", text, createdAt);
+  }
+
+  @Test
+  void roundTripsNumericIdsTimestampsAndMultibyteText() {
+    // Adjacent multibyte texts put every offset boundary next to a multi-byte sequence.
+    List<Tweet> tweets = List.of(
+        tweet("1800000000000000001", "caf\u00e9", Instant.ofEpochSecond(1_700_000_000)),
+        tweet("1800000000000000002", "\uD83D\uDE80\uD83D\uDE80", Instant.ofEpochSecond(1_700_000_001)),
+        tweet("1800000000000000003", "", Instant.ofEpochSecond(1_700_000_002)),
+        tweet("1800000000000000004", "\u65e5\u672c\u8a9e and ascii", null));
+
+    CompactTweets compact = CompactTweets.of(tweets);
+
+    assertEquals(tweets, compact.toTweets());
+    assertNull(compact.get(3).createdAt());
+  }
+
+  @Test
+  void idsThatDoNotSurviveALongKeepTheirOriginalString() {
+    List<Tweet> tweets = List.of(
+        tweet("123", "a", null),
+        tweet("0042", "b", null),
+        tweet("abc", "c", null),
+        tweet("0", "d", null),
+        tweet("99999999999999999999", "e", null));
+
+    assertEquals(tweets, CompactTweets.of(tweets).toTweets());
+    assertEquals(-1, CompactTweets.parseId("0042"));
+    assertEquals(-1, CompactTweets.parseId("9223372036854775808"));
+  }
+
+  @Test
+  void timestampsKeepSecondPrecision() {
+    Instant createdAt = Instant.parse("2024-05-01T12:00:00.750Z");
+
+    Tweet restored = CompactTweets.of(List.of(tweet("1", "a", createdAt))).get(0);
+
+    assertEquals(Instant.parse("2024-05-01T12:00:00Z"), restored.createdAt());
+  }
+
+  @Test
+  void anAuthorInSeveralBatchesIsStoredOnce() {
+    CompactTweets first = CompactTweets.of(List.of(
+        new Tweet("1", new String("7"), new String("Grace"), new String("grace"), "x", null)));
+    CompactTweets second = CompactTweets.of(List.of(
+        new Tweet("2", new String("7"), new String("Grace"), new String("grace"), "y", null)));
+
+    assertSame(first.get(0).authorName(), second.get(0).authorName());
+    assertSame(first.get(0).authorUsername(), second.get(0).authorUsername());
+    assertSame(first.get(0).authorId(), second.get(0).authorId());
+  }
+}
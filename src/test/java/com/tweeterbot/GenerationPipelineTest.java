@@ -0,0 +1,109 @@
+package com.tweeterbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class GenerationPipelineTest {
+
+  /** X client whose fetches stay pending until the test completes them. */
+  private static final class PendingXClient extends XClient {
+    final List<CompletableFuture<List<Tweet>>> calls = new CopyOnWriteArrayList<>();
+
+    PendingXClient() {
+      super("token", "http://127.0.0.1:9");
+    }
+
+    @Override
+    public CompletableFuture<List<Tweet>> fetchRecentUniqueAuthorsAsync(String topic, int targetCount,
+                                                                        StageTimings timings) {
+      CompletableFuture<List<Tweet>> call = new CompletableFuture<>();
+      calls.add(call);
+      return call;
+    }
+  }
+
+  private static GenerationPipeline pipeline(PendingXClient x, ConcurrencyLimiter xLimiter) {
+    return pipeline(x, xLimiter, "key");
+  }
+
+  private static GenerationPipeline pipeline(PendingXClient x, ConcurrencyLimiter xLimiter, String openAiKey) {
+    return new GenerationPipeline(x,
+        new OpenAIClient(openAiKey, "http://127.0.0.1:9", "model"),
+        new OpenAIModerationClient(openAiKey, "http://127.0.0.1:9", "moderation"),
+        "model",
+        Duration.ofSeconds(30), Duration.ofSeconds(30), Duration.ofSeconds(30),
+        xLimiter, new ConcurrencyLimiter(1));
+  }
+
+  @Test
+  void cancellingRunCancelsUpstreamCall() {
+    PendingXClient x = new PendingXClient();
+    GenerationPipeline pipeline = pipeline(x, new ConcurrencyLimiter(4));
+
+    CompletableFuture<GenerationPipeline.Result> run = pipeline.run("java", SummaryEngine.OPENAI, Deadline.none(),
+        status -> {}, provisional -> {}, StageTimings.start());
+    assertEquals(1, x.calls.size());
+
+    run.cancel(true);
+
+    assertTrue(x.calls.get(0).isCancelled(), "upstream fetch should be cancelled with the run");
+  }
+
+  @Test
+  void deadlineAbortsUpstreamCall() {
+    PendingXClient x = new PendingXClient();
+    GenerationPipeline pipeline = pipeline(x, new ConcurrencyLimiter(4));
+
+    CompletableFuture<GenerationPipeline.Result> run =
+        pipeline.run("java", Deadline.after(Duration.ofMillis(300)), status -> {});
+
+    ExecutionException e = assertThrows(ExecutionException.class, () -> run.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof Deadline.ExceededException, String.valueOf(e.getCause()));
+    assertTrue(x.calls.get(0).isCompletedExceptionally(), "upstream fetch should be aborted at the deadline");
+  }
+
+  @Test
+  void limiterSlotIsHeldUntilUpstreamCallFinishes() {
+    PendingXClient x = new PendingXClient();
+    GenerationPipeline pipeline = pipeline(x, new ConcurrencyLimiter(1));
+
+    pipeline.run("java", status -> {});
+    CompletableFuture<GenerationPipeline.Result> second = pipeline.run("rust", status -> {});
+    assertEquals(1, x.calls.size(), "second fetch must wait for the only X slot");
+
+    second.cancel(true);
+    pipeline.run("go", status -> {});
+    assertEquals(1, x.calls.size());
+
+    x.calls.get(0).completeExceptionally(new RuntimeException("boom"));
+    assertEquals(2, x.calls.size(), "the slot should pass to the next queued fetch");
+  }
+
+  @Test
+  void localEngineWithoutOpenAiKeyWithholdsPostWithoutCallingOpenAi() throws Exception {
+    PendingXClient x = new PendingXClient();
+    GenerationPipeline pipeline = pipeline(x, new ConcurrencyLimiter(4), null);
+
+    CompletableFuture<GenerationPipeline.Result> run = pipeline.run("java", SummaryEngine.LOCAL, Deadline.none(),
+        status -> {}, provisional -> {}, StageTimings.OFF);
+    x.calls.get(0).complete(List.of(
+        new Tweet("1", "a", "A", "a", "java   virtual threads\nare fast", Instant.EPOCH),
+        new Tweet("2", "b", "B", "b", "java records and virtual threads", Instant.EPOCH)));
+
+    GenerationPipeline.Result result = run.get(1, TimeUnit.SECONDS);
+    assertEquals(SummaryEngine.LOCAL, result.engine());
+    assertEquals(GenerationPipeline.WITHHELD_POST, result.summary().suggestedPost);
+    assertTrue(result.summary().bullets.contains("@a: java virtual threads are fast"), result.summary().bullets.toString());
+  }
+}
@@ -0,0 +1,84 @@
+package com.tweeterbot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class NearDuplicateFilterTest {
+
+  private static final List<String> TEMPLATES = List.of(
+      "Buy cheap Java ebooks now at https://x.co/abc",
+      "Free Java course for beginners, sign up today",
+      "Hiring Java devs remote, DM me your CV",
+      "Massive Java sale, everything 70% off this week",
+      "Huge giveaway alert: we are giving away three laptops to Java developers. Follow, like and retweet to enter!",
+      "Don't miss our free webinar on modern Java testing with JUnit and Testcontainers, this Thursday. Register here");
+
+  private static final List<String> SAME_TOPIC = List.of(
+      "Java 21 virtual threads finally made our blocking HTTP client code scale",
+      "Why does every Java interview still ask about HashMap versus Hashtable",
+      "Spent the whole afternoon chasing a ClassCastException in a Java generics mess",
+      "Records and sealed interfaces are the best thing that happened to Java in years",
+      "Hot take: Kotlin is nicer to write but Java is easier to read six months later",
+      "Finally migrated our monolith from Java 8 to Java 17, the GC alone was worth it",
+      "Teaching my students Java streams today and half the class discovered flatMap",
+      "Java performance tip: stop allocating inside your hot loops",
+      "Just released version 2.0 of my open source Java JSON parser",
+      "Profiling a Java app with Flight Recorder showed logging eating a third of our CPU",
+      "Java is thirty years old and still one of the most used languages on the planet",
+      "Trying the new Java foreign function API to call a C library without JNI");
+
+  private static boolean isDuplicate(String original, String candidate) {
+    NearDuplicateFilter filter = new NearDuplicateFilter();
+    assertTrue(filter.add(NearDuplicateFilter.fingerprint(original)));
+    return !filter.add(NearDuplicateFilter.fingerprint(candidate));
+  }
+
+  @Test
+  void copiesDifferingOnlyInLinksMentionsOrNumbersCollapse() {
+    String a = "Massive Java sale, 70% off for 48 hours https://x.co/abc @shop";
+    String b = "Massive Java sale, 25% off for 12 hours https://x.co/xyz @deals";
+
+    assertArrayEquals(NearDuplicateFilter.fingerprint(a), NearDuplicateFilter.fingerprint(b));
+    assertTrue(isDuplicate(a, b));
+  }
+
+  @Test
+  void everyOneWordEditOfATemplateCollapses() {
+    for (String template : TEMPLATES) {
+      String[] words = template.split(" ");
+      for (int i = 0; i < words.length; i++) {
+        String[] edited = words.clone();
+        edited[i] = "amazing";
+        String variant = String.join(" ", edited);
+        assertTrue(isDuplicate(template, variant), () -> "not collapsed: " + variant);
+      }
+    }
+  }
+
+  @Test
+  void distinctTweetsOnTheSameTopicAreKept() {
+    NearDuplicateFilter filter = new NearDuplicateFilter();
+    for (String tweet : SAME_TOPIC) {
+      assertTrue(filter.add(NearDuplicateFilter.fingerprint(tweet)), () -> "dropped: " + tweet);
+    }
+    for (String template : TEMPLATES) {
+      assertTrue(filter.add(NearDuplicateFilter.fingerprint(template)), () -> "dropped: " + template);
+    }
+  }
+
+  @Test
+  void similarityTracksTheShareOfWordsInCommon() {
+    // 9 of 11 distinct words in common.
+    double similarity = NearDuplicateFilter.similarity(
+        NearDuplicateFilter.fingerprint("alpha bravo charlie delta echo foxtrot golf hotel india juliet"),
+        NearDuplicateFilter.fingerprint("alpha bravo charlie delta echo foxtrot golf hotel india kilo"));
+
+    assertTrue(similarity > 0.65 && similarity < 0.99, String.valueOf(similarity));
+    assertFalse(isDuplicate("alpha bravo charlie", "delta echo foxtrot"));
+  }
+}
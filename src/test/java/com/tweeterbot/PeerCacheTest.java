@@ -0,0 +1,71 @@
+package com.tweeterbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PeerCacheTest {
+  private static final List<String> PEERS = List.of("http://a:8080", "http://b:8080/");
+
+  @Test
+  void rejectsSelfMissingFromPeers() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new PeerCache("http://c:8080", PEERS, "secret", Duration.ofMillis(500)));
+  }
+
+  @Test
+  void requiresSecret() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new PeerCache("http://a:8080", PEERS, null, Duration.ofMillis(500)));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PeerCache("http://a:8080", PEERS, " ", Duration.ofMillis(500)));
+  }
+
+  @Test
+  void authorizesOnlyTheSharedSecret() {
+    PeerCache cache = new PeerCache("http://b:8080", PEERS, "secret", Duration.ofMillis(500));
+    assertTrue(cache.authorized("secret"));
+    assertFalse(cache.authorized("wrong"));
+    assertFalse(cache.authorized(null));
+  }
+
+  @Test
+  void cacheKeysSurviveTheRoundTripToTheInternalEndpoint() throws Exception {
+    // Echoes the key exactly as the internal cache handler reads it.
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/internal/cache", exchange -> {
+      byte[] body = WebServer.queryParam(exchange.getRequestURI().getRawQuery(), "topic")
+          .getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    });
+    server.start();
+    try {
+      String node = "http://127.0.0.1:" + server.getAddress().getPort();
+      HttpClient http = HttpClient.newHttpClient();
+      for (String key : List.of("at&t", "c++", "100% pure", "a=b", "caf\u00e9", "local\u0000at&t", "local\u0000c++")) {
+        HttpResponse<String> resp = http.send(HttpRequest.newBuilder(PeerCache.cacheUri(node, key)).build(),
+            HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        assertEquals(key, resp.body());
+      }
+    } finally {
+      server.stop(0);
+    }
+  }
+}
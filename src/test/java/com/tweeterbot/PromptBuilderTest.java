@@ -0,0 +1,42 @@
+package com.tweeterbot;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PromptBuilderTest {
+
+  private static Tweet tweet(String id, String text) {
+    return new Tweet(id, "u" + id, "User " + id, "user" + id, text, Instant.now());
+  }
+
+  @Test
+  void keepsOneTweetWhenBudgetIsExhausted() {
+    String prompt = new PromptBuilder(0).build("java", List.of(
+        tweet("1", "java virtual threads"),
+        tweet("2", "java records")));
+
+    assertTrue(prompt.contains("\n1) "), prompt);
+    assertFalse(prompt.contains("\n2) "), prompt);
+  }
+
+  @Test
+  void dropsLongLowDensityTweetBeforeShortDistinctOne() {
+    String filler = "lorem ipsum dolor sit amet consectetur adipiscing elit ".repeat(6);
+    List<Tweet> tweets = List.of(
+        tweet("1", "java virtual threads scale"),
+        tweet("2", "java virtual threads ship " + filler),
+        tweet("3", "java records"));
+    PromptBuilder full = new PromptBuilder(100_000);
+    int needed = PromptBuilder.estimateTokens(full.build("java", tweets));
+
+    String prompt = new PromptBuilder(needed - 20).build("java", tweets);
+
+    assertFalse(prompt.contains("lorem"), prompt);
+    assertTrue(prompt.contains("java records"), prompt);
+  }
+}
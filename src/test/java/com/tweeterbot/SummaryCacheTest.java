@@ -0,0 +1,61 @@
+package com.tweeterbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SummaryCacheTest {
+
+  private static Tweet tweet(String id, String text) {
+    return new Tweet(id, "a" + id, "Author " + id, "author" + id, text, Instant.EPOCH);
+  }
+
+  @Test
+  void keyIgnoresInputOrder() {
+    Tweet a = tweet("1800000000000000001", "first");
+    Tweet b = tweet("1800000000000000002", "second");
+    Tweet c = tweet("42", "third");
+
+    assertEquals(SummaryCache.key("m", 1, List.of(a, b, c)), SummaryCache.key("m", 1, List.of(c, b, a)));
+    assertEquals(SummaryCache.key("m", 1, List.of(a, b, c)), SummaryCache.key("m", 1, List.of(b, c, a)));
+  }
+
+  @Test
+  void keyChangesWithTextModelOrSchemaVersion() {
+    List<Tweet> tweets = List.of(tweet("1", "java is fast"), tweet("2", "records"));
+    String key = SummaryCache.key("gpt-4o-mini", 1, tweets);
+
+    assertNotEquals(key, SummaryCache.key("gpt-4o-mini", 1, List.of(tweet("1", "java is slow"), tweet("2", "records"))));
+    assertNotEquals(key, SummaryCache.key("gpt-4o", 1, tweets));
+    assertNotEquals(key, SummaryCache.key("gpt-4o-mini", 2, tweets));
+    assertNotEquals(key, SummaryCache.key("gpt-4o-mini", 1, tweets.subList(0, 1)));
+  }
+
+  @Test
+  void fieldBoundariesAreUnambiguous() {
+    assertNotEquals(
+        SummaryCache.key("m", 1, List.of(tweet("1", "ab"), tweet("2", "c"))),
+        SummaryCache.key("m", 1, List.of(tweet("1", "a"), tweet("2", "bc"))));
+  }
+
+  @Test
+  void numericIdsOfDifferentLengthsSortNumerically() throws Exception {
+    // Lexically "10" < "9" < "100"; the canonical order must be 9, 10, 100.
+    List<Tweet> tweets = List.of(tweet("100", "c"), tweet("9", "a"), tweet("10", "b"));
+
+    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+    for (String field : List.of("m", "1", "9", "a", "10", "b", "100", "c")) {
+      digest.update(field.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+
+    assertEquals(HexFormat.of().formatHex(digest.digest()), SummaryCache.key("m", 1, tweets));
+  }
+}
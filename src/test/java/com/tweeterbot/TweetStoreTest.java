@@ -0,0 +1,38 @@
+package com.tweeterbot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TweetStoreTest {
+
+  private static Tweet tweet(String id, String text) {
+    return new Tweet(id, "u" + id, "User", "user" + id, text, Instant.now());
+  }
+
+  @Test
+  void hashtagTopicMatchesOnlyTheHashtag() {
+    TweetStore store = new TweetStore(100, 900);
+    store.addAll(List.of(
+        tweet("1", "Loving #Java 21"),
+        tweet("2", "java records are neat")));
+
+    TweetStore.Match hashtag = store.query("#java", 10);
+    assertEquals(List.of("1"), hashtag.tweets().stream().map(Tweet::id).toList());
+
+    TweetStore.Match word = store.query("java", 10);
+    assertEquals(2, word.tweets().size());
+  }
+
+  @Test
+  void searchSyntaxIsNotAnsweredLocally() {
+    assertNull(TweetStore.queryTerms("java OR kotlin"));
+    assertNull(TweetStore.queryTerms("\"virtual threads\""));
+    assertNull(TweetStore.queryTerms("#"));
+    assertEquals(List.of("#java", "21"), TweetStore.queryTerms("#Java 21"));
+  }
+}